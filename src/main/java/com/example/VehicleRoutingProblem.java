@@ -1,5 +1,10 @@
 package com.example;
 
+import com.example.algorithm.DistanceMatrix;
+import com.example.algorithm.SolverControl;
+import com.example.algorithm.TourConstructor;
+import com.example.algorithm.VrpInstance;
+
 import java.util.*;
 
 public class VehicleRoutingProblem {
@@ -7,6 +12,7 @@ public class VehicleRoutingProblem {
     private static final double MUTATION_RATE = 0.01; // 变异率
     private static final int TOURNAMENT_SIZE = 5; // 锦标赛选择的个体数量
     private static final int MAX_GENERATIONS = 10000; // 最大迭代次数
+    private static final double SAVINGS_NOISE = 0.3; // 初始种群中节约值的随机扰动幅度
 
     private static Random random = new Random(); // 随机数生成器
 
@@ -23,16 +29,36 @@ public class VehicleRoutingProblem {
     }
 
     public static Route findBestRoute(int[][] locations, int[] demands) {
+        return findBestRoute(locations, demands, new SolverControl<>());
+    }
+
+    /**
+     * 满足终止条件时停止，求解过程中可以从control中读取当前最优方案
+     *
+     * @param locations 客户位置
+     * @param demands   客户需求
+     * @param control   终止条件
+     * @return 最优方案
+     */
+    public static Route findBestRoute(int[][] locations, int[] demands, SolverControl<Route> control) {
         Population population = new Population(POPULATION_SIZE, locations.length);
         population.initialize(locations, demands);
+        control.start(MAX_GENERATIONS);
 
         int generationCount = 0;
-        while (generationCount < MAX_GENERATIONS) {
+        while (!control.isFinished(generationCount)) {
             population.evolve(locations, demands);
             generationCount++;
+            // 适应度为总距离，越小越好。基因在之后的代中会被复用，需要复制一份作为快照
+            Genome fittest = population.getFittest();
+            if (control.improves(fittest.fitness)) {
+                Genome snapshot = fittest.copy();
+                control.update(generationCount, fittest.fitness, snapshot::toRoute);
+            }
         }
 
-        return population.getFittestRoute();
+        Route best = control.getBest();
+        return best != null ? best : population.getFittest().toRoute();
     }
 
     static class Patch {
@@ -91,116 +117,228 @@ public class VehicleRoutingProblem {
         }
     }
 
+    /**
+     * 个体的基因：所有线路的客户依次存放在customers中，第i条线路为customers[starts[i]]到customers[starts[i+1]-1]。
+     * 数组容量不够时才扩大，进化过程中反复复用
+     */
+    static class Genome {
+        int[] customers;
+        int[] starts;
+        double[] demands; // 每条线路的载重
+        int patches; // 线路数
+        double fitness; // 适应度
+
+        Genome(int locationsCount) {
+            customers = new int[locationsCount];
+            starts = new int[locationsCount + 1];
+            demands = new double[locationsCount];
+        }
+
+        int size() {
+            return starts[patches];
+        }
+
+        /**
+         * 保证能存放size个客户、patches条线路
+         */
+        void ensureCapacity(int size, int patches) {
+            if (customers.length < size) {
+                customers = Arrays.copyOf(customers, Math.max(size, customers.length * 2));
+            }
+            if (demands.length < patches) {
+                demands = Arrays.copyOf(demands, Math.max(patches, demands.length * 2));
+                starts = Arrays.copyOf(starts, demands.length + 1);
+            }
+        }
+
+        void copyFrom(Genome other) {
+            ensureCapacity(other.size(), other.patches);
+            System.arraycopy(other.customers, 0, customers, 0, other.size());
+            System.arraycopy(other.starts, 0, starts, 0, other.patches + 1);
+            System.arraycopy(other.demands, 0, demands, 0, other.patches);
+            patches = other.patches;
+            fitness = other.fitness;
+        }
+
+        Genome copy() {
+            Genome copy = new Genome(0);
+            copy.copyFrom(this);
+            return copy;
+        }
+
+        Route toRoute() {
+            List<Patch> paths = new ArrayList<>(patches);
+            for (int i = 0; i < patches; i++) {
+                List<Integer> path = new ArrayList<>(starts[i + 1] - starts[i]);
+                for (int k = starts[i]; k < starts[i + 1]; k++) {
+                    path.add(customers[k]);
+                }
+                paths.add(new Patch(path, demands[i]));
+            }
+            Route route = new Route(paths);
+            route.setFitness(fitness);
+            return route;
+        }
+    }
+
+    /**
+     * 种群。当前一代和下一代使用两组预先分配的基因，每代交换角色，进化过程中不再分配对象
+     */
     static class Population {
-        private Route[] routes;
+        private Genome[] genomes;
+        private Genome[] offspring; // 下一代的缓冲区
+        private final boolean[] visited; // 交叉时当前线路中已有的客户
 
         public Population(int populationSize, int locationsCount) {
-            routes = new Route[populationSize];
+            genomes = new Genome[populationSize];
+            offspring = new Genome[populationSize];
             for (int i = 0; i < populationSize; i++) {
-                routes[i] = new Route(new ArrayList<>());
+                genomes[i] = new Genome(locationsCount);
+                offspring[i] = new Genome(locationsCount);
             }
+            visited = new boolean[locationsCount];
         }
 
+        /**
+         * 初始化：依次用节约算法、扫描算法、随机最近邻构造客户顺序，再按载重和时间限制依次装车
+         */
         public void initialize(int[][] locations, int[] demands) { // 修正初始化方法参数
-            for (Route route : routes) {
-                route.setFitness(0);
-                List<Patch> paths = new ArrayList<>();
-                List<Integer> currentPath = new ArrayList<>();
-                int currentCapacity = 0;
-                int currentTime = 0;
-                for (int i = 1; i < locations.length; i++) {
-                    int customer = i;
-                    int demand = demands[customer];
-                    if (currentCapacity + demand <= 100 && currentTime + distance(locations[0], locations[customer]) <= 8 * 60) {
-                        currentPath.add(customer);
-                        currentCapacity += demand;
-                        currentTime += (int) distance(locations[0], locations[customer]);
-                    } else {
-                        paths.add(new Patch(new ArrayList<>(currentPath), currentCapacity));
-                        currentPath.clear();
-                        currentCapacity = 0;
-                        currentTime = 0;
-                    }
+            int capacity = 100;
+            double[] xs = new double[locations.length];
+            double[] ys = new double[locations.length];
+            for (int i = 0; i < locations.length; i++) {
+                capacity = Math.max(capacity, demands[i]);
+                xs[i] = locations[i][0];
+                ys[i] = locations[i][1];
+            }
+            VrpInstance instance = new VrpInstance(demands, DistanceMatrix.euclidean(locations), capacity, Long.MAX_VALUE, xs, ys);
+            TourConstructor constructor = new TourConstructor(instance);
+            SplittableRandom splittableRandom = new SplittableRandom(random.nextLong());
+            int[] tour = new int[locations.length - 1];
+            for (int k = 0; k < genomes.length; k++) {
+                if (k % 3 == 0) {
+                    constructor.savings(tour, splittableRandom, k == 0 ? 0 : SAVINGS_NOISE);
+                } else if (k % 3 == 1) {
+                    constructor.sweep(tour, k == 1 ? 0 : splittableRandom.nextDouble() * 2 * Math.PI);
+                } else {
+                    constructor.nearestNeighbor(tour, splittableRandom);
                 }
-                if (!currentPath.isEmpty()) {
-                    paths.add(new Patch(new ArrayList<>(currentPath), currentCapacity));
+                load(genomes[k], tour, locations, demands);
+            }
+        }
+
+        /**
+         * 按顺序装车，超过载重或时间限制时换下一辆车
+         */
+        private void load(Genome genome, int[] tour, int[][] locations, int[] demands) {
+            genome.fitness = 0;
+            genome.patches = 0;
+            genome.starts[0] = 0;
+            int size = 0;
+            int currentCapacity = 0;
+            int currentTime = 0;
+            for (int customer : tour) {
+                int demand = demands[customer];
+                int time = (int) distance(locations[0], locations[customer]);
+                if (size > genome.starts[genome.patches]
+                        && (currentCapacity + demand > 100 || currentTime + distance(locations[0], locations[customer]) > 8 * 60)) {
+                    genome.demands[genome.patches] = currentCapacity;
+                    genome.starts[++genome.patches] = size;
+                    currentCapacity = 0;
+                    currentTime = 0;
                 }
-                route.getPaths().addAll(paths);
+                genome.customers[size++] = customer;
+                currentCapacity += demand;
+                currentTime += time;
+            }
+            if (size > genome.starts[genome.patches]) {
+                genome.demands[genome.patches] = currentCapacity;
+                genome.starts[++genome.patches] = size;
             }
         }
 
         public void evolve(int[][] locations, int[] demands) {
-            Route[] newRoutes = new Route[routes.length];
-            for (int i = 0; i < routes.length; i++) {
-                Route parent1 = selectParent();
-                Route parent2 = selectParent();
-                Route child = crossover(parent1, parent2, demands);
+            for (int i = 0; i < genomes.length; i++) {
+                Genome parent1 = selectParent();
+                Genome parent2 = selectParent();
+                Genome child = offspring[i];
+                crossover(parent1, parent2, child, demands);
                 mutate(child);
                 evaluateRoute(child, locations);
-                newRoutes[i] = child;
             }
-            routes = newRoutes;
+            Genome[] current = genomes;
+            genomes = offspring;
+            offspring = current;
         }
 
-        private Route selectParent() {
-            Route[] tournament = new Route[TOURNAMENT_SIZE];
+        private Genome selectParent() {
+            Genome best = null;
             for (int i = 0; i < TOURNAMENT_SIZE; i++) {
-                tournament[i] = routes[random.nextInt(routes.length)];
+                Genome candidate = genomes[random.nextInt(genomes.length)];
+                if (best == null || candidate.fitness > best.fitness) {
+                    best = candidate;
+                }
             }
-            Arrays.sort(tournament, Comparator.comparingDouble(Route::getFitness).reversed());
-            return tournament[0];
+            return best;
         }
 
-        private Route crossover(Route parent1, Route parent2, int[] demands) {
-            List<Patch> childPaths = new ArrayList<>();
-            for (int i = 0; i < parent1.getPaths().size(); i++) {//确定几条线路
-                List<Integer> path = new ArrayList<>();
-                Set<Integer> visited = new HashSet<>();
-                Patch patch1 = parent1.getPaths().get(i);
+        private void crossover(Genome parent1, Genome parent2, Genome child, int[] demands) {
+            child.ensureCapacity(parent1.size() + parent2.size(), parent1.patches);
+            int size = 0;
+            child.starts[0] = 0;
+            for (int i = 0; i < parent1.patches; i++) {//确定几条线路
                 double demand = 0;
-                for (int customer : patch1.getPaths()) {
-                    path.add(customer);
-                    visited.add(customer);
+                for (int k = parent1.starts[i]; k < parent1.starts[i + 1]; k++) {
+                    int customer = parent1.customers[k];
+                    child.customers[size++] = customer;
+                    visited[customer] = true;
                     demand += demands[customer];
                 }
-                Patch patch2 = parent2.getPaths().get(i);
-                for (int customer : patch2.getPaths()) {
-                    if (!visited.contains(customer)) {
-                        path.add(customer);
-                        visited.add(customer);
+                // 初始线路数不同，母本的线路可能更少
+                for (int k = parent2.starts[Math.min(i, parent2.patches)]; k < parent2.starts[Math.min(i + 1, parent2.patches)]; k++) {
+                    int customer = parent2.customers[k];
+                    if (!visited[customer]) {
+                        child.customers[size++] = customer;
+                        visited[customer] = true;
                         demand += demands[customer];
                     }
                 }
-                childPaths.add(new Patch(path, demand));
+                for (int k = child.starts[i]; k < size; k++) {
+                    visited[child.customers[k]] = false;
+                }
+                child.demands[i] = demand;
+                child.starts[i + 1] = size;
             }
-            return new Route(childPaths);
+            child.patches = parent1.patches;
         }
 
         /**
          * 变异操作
          *
-         * @param route 路线
+         * @param genome 基因
          */
-        private void mutate(Route route) {
-            for (Patch path : route.getPaths()) {
-                List<Integer> paths = path.getPaths();
+        private void mutate(Genome genome) {
+            for (int i = 0; i < genome.patches; i++) {
+                int from = genome.starts[i];
+                int size = genome.starts[i + 1] - from;
                 if (Math.random() < MUTATION_RATE) {
-                    int index1 = random.nextInt(paths.size());
-                    int index2 = random.nextInt(paths.size());
-                    Collections.swap(paths, index1, index2);
+                    int index1 = from + random.nextInt(size);
+                    int index2 = from + random.nextInt(size);
+                    int temp = genome.customers[index1];
+                    genome.customers[index1] = genome.customers[index2];
+                    genome.customers[index2] = temp;
                 }
             }
         }
 
-        private void evaluateRoute(Route route, int[][] locations) {
+        private void evaluateRoute(Genome genome, int[][] locations) {
             double fitness = 0;
-            for (Patch path : route.getPaths()) {
-                List<Integer> paths = path.getPaths();
-                for (int i = 0; i < paths.size() - 1; i++) {
-                    fitness += distance(locations[paths.get(i)], locations[paths.get(i + 1)]);
+            for (int i = 0; i < genome.patches; i++) {
+                for (int k = genome.starts[i]; k < genome.starts[i + 1] - 1; k++) {
+                    fitness += distance(locations[genome.customers[k]], locations[genome.customers[k + 1]]);
                 }
             }
-            route.setFitness(fitness);
+            genome.fitness = fitness;
         }
 
         /**
@@ -214,11 +352,11 @@ public class VehicleRoutingProblem {
             return Math.sqrt(Math.pow(loc2[0] - loc1[0], 2) + Math.pow(loc2[1] - loc1[1], 2));
         }
 
-        public Route getFittestRoute() {
-            Route fittest = routes[0];
-            for (Route route : routes) {
-                if (route.getFitness() < fittest.getFitness()) {
-                    fittest = route;
+        public Genome getFittest() {
+            Genome fittest = genomes[0];
+            for (Genome genome : genomes) {
+                if (genome.fitness < fittest.fitness) {
+                    fittest = genome;
                 }
             }
             return fittest;
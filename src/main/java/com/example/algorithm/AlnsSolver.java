@@ -0,0 +1,606 @@
+package com.example.algorithm;
+
+import com.example.algorithm.VehicleRoutingProblem.Individual;
+import com.example.algorithm.VehicleRoutingProblem.Route;
+import com.example.model.UserVo;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+
+/**
+ * 自适应大邻域搜索(ALNS)。
+ * 每次迭代用一个破坏算子移除一部分客户(随机、代价最大、相关性)，再用一个修复算子插回(贪心、regret-2、regret-3)，
+ * 新解按模拟退火准则接受。算子按轮盘赌选择，权重每{@link #SEGMENT}次迭代根据得分调整。
+ * 解保存为基本类型数组：所有线路首尾相接的客户序列和每条线路的起始位置
+ */
+@Slf4j
+@Component
+public class AlnsSolver implements Solver {
+    public static final String NAME = "alns";
+
+    /**
+     * 默认最大迭代次数
+     */
+    private static final int MAX_ITERATIONS = 25000;
+    /**
+     * 调整算子权重的间隔
+     */
+    private static final int SEGMENT = 100;
+    /**
+     * 权重调整时新得分所占比例
+     */
+    private static final double REACTION = 0.1;
+    /**
+     * 得分：找到全局最优解、比当前解好、接受了较差的新解
+     */
+    private static final double SCORE_BEST = 33;
+    private static final double SCORE_BETTER = 9;
+    private static final double SCORE_ACCEPTED = 13;
+    /**
+     * 初始温度下比初始解差5%的解以50%的概率被接受
+     */
+    private static final double START_WORSE = 0.05;
+    /**
+     * 求解结束时温度降到初始温度的比例，中间按求解进度指数下降
+     */
+    private static final double END_TEMPERATURE = 0.001;
+    /**
+     * 代价最大移除和相关性移除的随机程度，越大越接近确定性
+     */
+    private static final double DETERMINISM = 3;
+
+    private static final int RANDOM_REMOVAL = 0;
+    private static final int WORST_REMOVAL = 1;
+    private static final int SHAW_REMOVAL = 2;
+    private static final int GREEDY_INSERTION = 0;
+    private static final int REGRET_2 = 1;
+    private static final int REGRET_3 = 2;
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public Map<String, Object> solve(List<UserVo> customers, DistanceProvider distanceProvider,
+                                     SolverOptions options, SolverControl<Route> control) {
+        VrpInstance instance = VrpInstance.of(customers, distanceProvider.matrix(customers));
+        Search search = new Search(instance, new SplittableRandom(options.resolveSeed()));
+        search.run(customers, control);
+        log.info("alns stopped, reason:{}, iterations:{}, cost:{}, destroy weights:{}, repair weights:{}",
+                control.getStopReason(), control.getGeneration(), control.getBestCost(),
+                Arrays.toString(search.destroyWeights), Arrays.toString(search.repairWeights));
+        Route best = control.getBest();
+        Map<String, Object> result = new HashMap<>();
+        result.put("bestRoute", best);
+        result.put("routs", Collections.singletonList(best));
+        return result;
+    }
+
+    /**
+     * 一次求解的状态
+     */
+    static class Search {
+        private final VrpInstance instance;
+        private final int n;
+        private final SplittableRandom random;
+        private final Solution current;
+        private final Solution candidate;
+        private final Solution best;
+        /**
+         * 被移除、等待插入的客户
+         */
+        private final int[] pending;
+        private int pendingCount;
+        private final boolean[] removed;
+        /**
+         * 排序和选择用的临时数组
+         */
+        private final int[] items;
+        private final double[] keys;
+        private final double[] routeCosts;
+        private final double maxDistance;
+        private final int maxDemand;
+        final double[] destroyWeights = {1, 1, 1};
+        final double[] repairWeights = {1, 1, 1};
+        private final double[] destroyScores = new double[3];
+        private final double[] repairScores = new double[3];
+        private final int[] destroyUses = new int[3];
+        private final int[] repairUses = new int[3];
+
+        Search(VrpInstance instance, SplittableRandom random) {
+            this.instance = instance;
+            this.n = instance.getCustomers();
+            this.random = random;
+            this.current = new Solution(instance);
+            this.candidate = new Solution(instance);
+            this.best = new Solution(instance);
+            this.pending = new int[n];
+            this.removed = new boolean[n + 1];
+            this.items = new int[n];
+            this.keys = new double[n + 1];
+            this.routeCosts = new double[n + 1];
+            double maxDistance = 0;
+            int maxDemand = 0;
+            for (int i = 1; i <= n; i++) {
+                maxDemand = Math.max(maxDemand, instance.demand(i));
+                for (int j = 1; j <= n; j++) {
+                    maxDistance = Math.max(maxDistance, instance.distance(i, j));
+                }
+            }
+            this.maxDistance = maxDistance > 0 ? maxDistance : 1;
+            this.maxDemand = maxDemand > 0 ? maxDemand : 1;
+        }
+
+        void run(List<UserVo> customers, SolverControl<Route> control) {
+            control.start(MAX_ITERATIONS);
+            for (int c = 1; c <= n; c++) {
+                pending[pendingCount++] = c;
+            }
+            repair(current, REGRET_2);
+            best.copyFrom(current);
+            offer(control, 0, customers);
+            double startTemperature = -START_WORSE * current.cost / Math.log(0.5);
+
+            int iteration = 0;
+            while (!control.isFinished(iteration)) {
+                iteration++;
+                double temperature = startTemperature * Math.pow(END_TEMPERATURE, control.progress());
+                int destroy = select(destroyWeights);
+                int repair = select(repairWeights);
+                candidate.copyFrom(current);
+                destroy(candidate, destroy);
+                repair(candidate, repair);
+
+                double score = 0;
+                if (candidate.cost < best.cost - 1e-9) {
+                    best.copyFrom(candidate);
+                    current.copyFrom(candidate);
+                    offer(control, iteration, customers);
+                    score = SCORE_BEST;
+                } else if (candidate.cost < current.cost - 1e-9) {
+                    current.copyFrom(candidate);
+                    score = SCORE_BETTER;
+                } else if (temperature > 0 && random.nextDouble() < Math.exp((current.cost - candidate.cost) / temperature)) {
+                    current.copyFrom(candidate);
+                    score = SCORE_ACCEPTED;
+                }
+                destroyScores[destroy] += score;
+                repairScores[repair] += score;
+                destroyUses[destroy]++;
+                repairUses[repair]++;
+                if (iteration % SEGMENT == 0) {
+                    adapt(destroyWeights, destroyScores, destroyUses);
+                    adapt(repairWeights, repairScores, repairUses);
+                }
+            }
+        }
+
+        private void offer(SolverControl<Route> control, int iteration, List<UserVo> customers) {
+            Individual individual = best.toIndividual();
+            control.update(iteration, individual.cost,
+                    () -> VehicleRoutingProblem.toRoute(individual, instance, customers, "最优方案"));
+        }
+
+        private int select(double[] weights) {
+            double total = 0;
+            for (double weight : weights) {
+                total += weight;
+            }
+            double r = random.nextDouble() * total;
+            for (int i = 0; i < weights.length; i++) {
+                r -= weights[i];
+                if (r < 0) {
+                    return i;
+                }
+            }
+            return weights.length - 1;
+        }
+
+        private void adapt(double[] weights, double[] scores, int[] uses) {
+            for (int i = 0; i < weights.length; i++) {
+                if (uses[i] > 0) {
+                    weights[i] = weights[i] * (1 - REACTION) + REACTION * scores[i] / uses[i];
+                }
+                // 保留一个下限，避免算子再也不被选中
+                weights[i] = Math.max(weights[i], 0.1);
+                scores[i] = 0;
+                uses[i] = 0;
+            }
+        }
+
+        /**
+         * 本次移除的客户数量：客户数的10%到40%，最少1个，最多60个
+         */
+        private int removalCount() {
+            int min = Math.max(1, Math.min(n / 10, 30));
+            int max = Math.max(min, Math.min(n * 2 / 5, 60));
+            return min + random.nextInt(max - min + 1);
+        }
+
+        private void destroy(Solution solution, int operator) {
+            int count = Math.min(removalCount(), solution.size());
+            if (count == 0) {
+                return;
+            }
+            switch (operator) {
+                case WORST_REMOVAL:
+                    worstRemoval(solution, count);
+                    break;
+                case SHAW_REMOVAL:
+                    shawRemoval(solution, count);
+                    break;
+                default:
+                    randomRemoval(solution, count);
+                    break;
+            }
+            solution.removeAll(removed);
+            for (int i = 0; i < pendingCount; i++) {
+                removed[pending[i]] = false;
+            }
+        }
+
+        private void remove(int customer) {
+            removed[customer] = true;
+            pending[pendingCount++] = customer;
+        }
+
+        private void randomRemoval(Solution solution, int count) {
+            int size = solution.size();
+            System.arraycopy(solution.tour, 0, items, 0, size);
+            for (int i = 0; i < count; i++) {
+                int j = i + random.nextInt(size - i);
+                int temp = items[i];
+                items[i] = items[j];
+                items[j] = temp;
+                remove(items[i]);
+            }
+        }
+
+        /**
+         * 移除绕路最多的客户：按移除后节省的距离从大到小排序，随机偏向前面的客户
+         */
+        private void worstRemoval(Solution solution, int count) {
+            int size = solution.size();
+            for (int r = 0; r < solution.routes; r++) {
+                for (int p = solution.starts[r]; p < solution.starts[r + 1]; p++) {
+                    int c = solution.tour[p];
+                    int prev = p == solution.starts[r] ? DistanceMatrix.DEPOT : solution.tour[p - 1];
+                    int next = p + 1 == solution.starts[r + 1] ? DistanceMatrix.DEPOT : solution.tour[p + 1];
+                    keys[c] = -(instance.distance(prev, c) + instance.distance(c, next) - instance.distance(prev, next));
+                    items[p] = c;
+                }
+            }
+            sort(items, 0, size);
+            pickBiased(size, count);
+        }
+
+        /**
+         * 相关性移除：不断选一个已移除的客户，移除与它距离和需求最接近的客户
+         */
+        private void shawRemoval(Solution solution, int count) {
+            int size = solution.size();
+            System.arraycopy(solution.tour, 0, items, 0, size);
+            int seed = random.nextInt(size);
+            remove(items[seed]);
+            items[seed] = items[--size];
+            int start = pendingCount - 1;
+            while (pendingCount - start < count) {
+                int reference = pending[start + random.nextInt(pendingCount - start)];
+                for (int i = 0; i < size; i++) {
+                    int c = items[i];
+                    keys[c] = (instance.distance(reference, c) + instance.distance(c, reference)) / 2 / maxDistance
+                            + (double) Math.abs(instance.demand(reference) - instance.demand(c)) / maxDemand;
+                }
+                sort(items, 0, size);
+                int index = (int) (Math.pow(random.nextDouble(), DETERMINISM) * size);
+                remove(items[index]);
+                System.arraycopy(items, index + 1, items, index, size - index - 1);
+                size--;
+            }
+        }
+
+        /**
+         * 从排好序的items中按偏向前面的随机位置取出count个客户
+         */
+        private void pickBiased(int size, int count) {
+            for (int i = 0; i < count; i++) {
+                int index = (int) (Math.pow(random.nextDouble(), DETERMINISM) * size);
+                remove(items[index]);
+                System.arraycopy(items, index + 1, items, index, size - index - 1);
+                size--;
+            }
+        }
+
+        /**
+         * 按keys从小到大排序items[from, to)
+         */
+        private void sort(int[] items, int from, int to) {
+            while (to - from > 16) {
+                double pivot = keys[items[(from + to) >>> 1]];
+                int i = from;
+                int j = to - 1;
+                while (i <= j) {
+                    while (keys[items[i]] < pivot) {
+                        i++;
+                    }
+                    while (keys[items[j]] > pivot) {
+                        j--;
+                    }
+                    if (i <= j) {
+                        int temp = items[i];
+                        items[i++] = items[j];
+                        items[j--] = temp;
+                    }
+                }
+                // 先递归处理较短的一侧
+                if (j + 1 - from < to - i) {
+                    sort(items, from, j + 1);
+                    from = i;
+                } else {
+                    sort(items, i, to);
+                    to = j + 1;
+                }
+            }
+            for (int i = from + 1; i < to; i++) {
+                int item = items[i];
+                double key = keys[item];
+                int j = i - 1;
+                while (j >= from && keys[items[j]] > key) {
+                    items[j + 1] = items[j];
+                    j--;
+                }
+                items[j + 1] = item;
+            }
+        }
+
+        /**
+         * 插回所有待插入的客户
+         *
+         * @param operator 贪心或regret-k
+         */
+        private void repair(Solution solution, int operator) {
+            int regret = operator == REGRET_3 ? 3 : operator == REGRET_2 ? 2 : 1;
+            while (pendingCount > 0) {
+                int chosen = -1;
+                double chosenRegret = Double.NEGATIVE_INFINITY;
+                double chosenCost = Double.POSITIVE_INFINITY;
+                for (int i = 0; i < pendingCount; i++) {
+                    int c = pending[i];
+                    double value = regret == 1 ? 0 : regretValue(solution, c, regret);
+                    double cost = solution.bestInsertion(c);
+                    if (value > chosenRegret + 1e-9 || (Math.abs(value - chosenRegret) <= 1e-9 && cost < chosenCost)) {
+                        chosen = i;
+                        chosenRegret = value;
+                        chosenCost = cost;
+                    }
+                }
+                int c = pending[chosen];
+                pending[chosen] = pending[--pendingCount];
+                solution.bestInsertion(c);
+                solution.insertBest(c);
+            }
+        }
+
+        /**
+         * 客户插入各条线路(含新线路)的最小代价中，第2到第k小与最小值之差的和
+         */
+        private double regretValue(Solution solution, int c, int k) {
+            int options = solution.routeInsertionCosts(c, routeCosts);
+            double first = Double.POSITIVE_INFINITY;
+            double second = Double.POSITIVE_INFINITY;
+            double third = Double.POSITIVE_INFINITY;
+            for (int i = 0; i < options; i++) {
+                double cost = routeCosts[i];
+                if (cost < first) {
+                    third = second;
+                    second = first;
+                    first = cost;
+                } else if (cost < second) {
+                    third = second;
+                    second = cost;
+                } else if (cost < third) {
+                    third = cost;
+                }
+            }
+            // 可选线路不足k条时regret视为很大，优先插入
+            double regret = second == Double.POSITIVE_INFINITY ? Double.MAX_VALUE / 4 : second - first;
+            if (k >= 3) {
+                regret += third == Double.POSITIVE_INFINITY ? Double.MAX_VALUE / 4 : third - first;
+            }
+            return regret;
+        }
+    }
+
+    /**
+     * 解：tour[starts[r], starts[r+1])为第r条线路依次访问的客户
+     */
+    static class Solution {
+        private final VrpInstance instance;
+        final int[] tour;
+        final int[] starts;
+        int routes;
+        final int[] loads;
+        final long[] durations;
+        double cost;
+        /**
+         * 最近一次bestInsertion的结果，route为-1表示新开一条线路
+         */
+        private int insertRoute;
+        private int insertPosition;
+
+        Solution(VrpInstance instance) {
+            int n = instance.getCustomers();
+            this.instance = instance;
+            this.tour = new int[n];
+            this.starts = new int[n + 1];
+            this.loads = new int[n];
+            this.durations = new long[n];
+        }
+
+        int size() {
+            return starts[routes];
+        }
+
+        void copyFrom(Solution other) {
+            int size = other.size();
+            System.arraycopy(other.tour, 0, tour, 0, size);
+            System.arraycopy(other.starts, 0, starts, 0, other.routes + 1);
+            System.arraycopy(other.loads, 0, loads, 0, other.routes);
+            System.arraycopy(other.durations, 0, durations, 0, other.routes);
+            routes = other.routes;
+            cost = other.cost;
+        }
+
+        Individual toIndividual() {
+            Individual individual = new Individual(instance.getCustomers());
+            System.arraycopy(tour, 0, individual.tour, 0, size());
+            System.arraycopy(starts, 0, individual.starts, 0, routes + 1);
+            individual.routes = routes;
+            individual.cost = cost;
+            individual.hash = FitnessMemo.hash(individual.tour);
+            return individual;
+        }
+
+        /**
+         * 删除标记的客户并去掉空线路，重新计算载重、时长和总距离
+         */
+        void removeAll(boolean[] removed) {
+            int size = 0;
+            int kept = 0;
+            cost = 0;
+            for (int r = 0; r < routes; r++) {
+                int start = size;
+                int prev = DistanceMatrix.DEPOT;
+                int load = 0;
+                long duration = 0;
+                for (int p = starts[r]; p < starts[r + 1]; p++) {
+                    int c = tour[p];
+                    if (removed[c]) {
+                        continue;
+                    }
+                    tour[size++] = c;
+                    load += instance.demand(c);
+                    duration += instance.duration(prev, c);
+                    cost += instance.distance(prev, c);
+                    prev = c;
+                }
+                if (size > start) {
+                    duration += instance.duration(prev, DistanceMatrix.DEPOT);
+                    cost += instance.distance(prev, DistanceMatrix.DEPOT);
+                    starts[kept] = start;
+                    loads[kept] = load;
+                    durations[kept] = duration;
+                    kept++;
+                }
+            }
+            routes = kept;
+            starts[kept] = size;
+        }
+
+        /**
+         * 计算客户的最优插入位置，结果供{@link #insertBest(int)}使用
+         *
+         * @return 插入增加的距离
+         */
+        double bestInsertion(int c) {
+            double best = newRouteCost(c);
+            insertRoute = -1;
+            for (int r = 0; r < routes; r++) {
+                if (loads[r] + instance.demand(c) > instance.getCapacity()) {
+                    continue;
+                }
+                for (int p = starts[r]; p <= starts[r + 1]; p++) {
+                    double delta = insertionCost(c, r, p);
+                    if (delta < best && feasibleDuration(c, r, p)) {
+                        best = delta;
+                        insertRoute = r;
+                        insertPosition = p;
+                    }
+                }
+            }
+            return best;
+        }
+
+        /**
+         * 计算客户插入每条可行线路的最小代价，最后一项为新开一条线路
+         *
+         * @return 写入costs的数量
+         */
+        int routeInsertionCosts(int c, double[] costs) {
+            int count = 0;
+            for (int r = 0; r < routes; r++) {
+                if (loads[r] + instance.demand(c) > instance.getCapacity()) {
+                    continue;
+                }
+                double best = Double.POSITIVE_INFINITY;
+                for (int p = starts[r]; p <= starts[r + 1]; p++) {
+                    double delta = insertionCost(c, r, p);
+                    if (delta < best && feasibleDuration(c, r, p)) {
+                        best = delta;
+                    }
+                }
+                if (best < Double.POSITIVE_INFINITY) {
+                    costs[count++] = best;
+                }
+            }
+            costs[count++] = newRouteCost(c);
+            return count;
+        }
+
+        /**
+         * 插入到最近一次{@link #bestInsertion(int)}计算出的位置
+         */
+        void insertBest(int c) {
+            if (insertRoute < 0) {
+                int size = size();
+                tour[size] = c;
+                loads[routes] = instance.demand(c);
+                durations[routes] = instance.duration(DistanceMatrix.DEPOT, c) + instance.duration(c, DistanceMatrix.DEPOT);
+                cost += newRouteCost(c);
+                routes++;
+                starts[routes] = size + 1;
+                return;
+            }
+            int r = insertRoute;
+            int p = insertPosition;
+            int prev = prev(r, p);
+            int next = next(r, p);
+            cost += instance.distance(prev, c) + instance.distance(c, next) - instance.distance(prev, next);
+            durations[r] += instance.duration(prev, c) + instance.duration(c, next) - instance.duration(prev, next);
+            loads[r] += instance.demand(c);
+            int size = size();
+            System.arraycopy(tour, p, tour, p + 1, size - p);
+            tour[p] = c;
+            for (int k = r + 1; k <= routes; k++) {
+                starts[k]++;
+            }
+        }
+
+        private double newRouteCost(int c) {
+            return instance.distance(DistanceMatrix.DEPOT, c) + instance.distance(c, DistanceMatrix.DEPOT);
+        }
+
+        private double insertionCost(int c, int r, int p) {
+            int prev = prev(r, p);
+            int next = next(r, p);
+            return instance.distance(prev, c) + instance.distance(c, next) - instance.distance(prev, next);
+        }
+
+        private boolean feasibleDuration(int c, int r, int p) {
+            int prev = prev(r, p);
+            int next = next(r, p);
+            long duration = durations[r] + instance.duration(prev, c) + instance.duration(c, next) - instance.duration(prev, next);
+            return duration <= instance.getMaxDuration();
+        }
+
+        private int prev(int r, int p) {
+            return p == starts[r] ? DistanceMatrix.DEPOT : tour[p - 1];
+        }
+
+        private int next(int r, int p) {
+            return p == starts[r + 1] ? DistanceMatrix.DEPOT : tour[p];
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package com.example.algorithm;
+
+import com.example.model.UserVo;
+
+import java.util.List;
+
+/**
+ * 通过高德距离接口(带缓存)获取距离
+ */
+public class AmapDistanceProvider implements DistanceProvider {
+    private final GeoregeoApi georegeoApi;
+
+    public AmapDistanceProvider(GeoregeoApi georegeoApi) {
+        this.georegeoApi = georegeoApi;
+    }
+
+    @Override
+    public DistanceMatrix matrix(List<UserVo> customers) {
+        return DistanceMatrix.build(customers, georegeoApi);
+    }
+
+    @Override
+    public DistanceMatrix matrix(List<UserVo> customers, boolean[] required) {
+        return DistanceMatrix.build(customers, georegeoApi, required);
+    }
+}
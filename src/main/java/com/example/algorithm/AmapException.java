@@ -0,0 +1,21 @@
+package com.example.algorithm;
+
+import lombok.Getter;
+
+/**
+ * 高德接口返回失败状态
+ */
+@Getter
+public class AmapException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * 高德返回的状态码
+     */
+    private final String infocode;
+
+    public AmapException(String infocode, String info) {
+        super("高德接口调用失败: " + info + "(" + infocode + ")");
+        this.infocode = infocode;
+    }
+}
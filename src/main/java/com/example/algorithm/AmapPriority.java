@@ -0,0 +1,39 @@
+package com.example.algorithm;
+
+import java.util.function.Supplier;
+
+/**
+ * 高德接口请求的优先级，令牌不足时交互请求优先于后台请求
+ */
+public enum AmapPriority {
+    /**
+     * 交互请求，如线路规划
+     */
+    INTERACTIVE,
+    /**
+     * 后台请求，如批量地理编码、缓存预热
+     */
+    BACKGROUND;
+
+    private static final ThreadLocal<AmapPriority> CURRENT = ThreadLocal.withInitial(() -> INTERACTIVE);
+
+    /**
+     * 当前线程的请求优先级，默认为交互请求
+     */
+    public static AmapPriority current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * 以指定优先级执行
+     */
+    public static <T> T call(AmapPriority priority, Supplier<T> task) {
+        AmapPriority previous = CURRENT.get();
+        CURRENT.set(priority);
+        try {
+            return task.get();
+        } finally {
+            CURRENT.set(previous);
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.example.algorithm;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * 高德接口并发请求执行器。
+ * 同时在途的请求数量不超过配置的上限，调用方可以一次提交大量请求后统一等待结果；
+ * 排队的请求中交互请求优先执行
+ */
+@Component
+public class AmapRequestExecutor {
+    private final ThreadPoolExecutor executor;
+    private final AtomicLong sequence = new AtomicLong();
+
+    public AmapRequestExecutor(@Value("${amap.http.max-in-flight:16}") int maxInFlight) {
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("amap-");
+        threadFactory.setDaemon(true);
+        this.executor = new ThreadPoolExecutor(maxInFlight, maxInFlight, 60, TimeUnit.SECONDS,
+                new PriorityBlockingQueue<>(), threadFactory);
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * 以当前线程的优先级提交一个请求
+     *
+     * @param task 请求
+     * @return 请求结果
+     */
+    public <T> CompletableFuture<T> submit(Supplier<T> task) {
+        return submit(AmapPriority.current(), task);
+    }
+
+    /**
+     * 提交一个请求
+     *
+     * @param priority 优先级
+     * @param task     请求
+     * @return 请求结果
+     */
+    public <T> CompletableFuture<T> submit(AmapPriority priority, Supplier<T> task) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        executor.execute(new PrioritizedTask(priority, sequence.getAndIncrement(), () -> {
+            try {
+                future.complete(AmapPriority.call(priority, task));
+            } catch (Throwable e) {
+                future.completeExceptionally(e);
+            }
+        }));
+        return future;
+    }
+
+    /**
+     * 并发执行所有请求并等待全部完成
+     *
+     * @param tasks 请求列表
+     * @return 与请求列表一一对应的结果
+     */
+    public <T> List<T> invokeAll(List<Supplier<T>> tasks) {
+        List<CompletableFuture<T>> futures = new ArrayList<>(tasks.size());
+        for (Supplier<T> task : tasks) {
+            futures.add(submit(task));
+        }
+        List<T> results = new ArrayList<>(futures.size());
+        for (CompletableFuture<T> future : futures) {
+            results.add(future.join());
+        }
+        return results;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    /**
+     * 排队顺序：先按优先级，同优先级按提交顺序
+     */
+    private static class PrioritizedTask implements Runnable, Comparable<PrioritizedTask> {
+        private final AmapPriority priority;
+        private final long sequence;
+        private final Runnable task;
+
+        PrioritizedTask(AmapPriority priority, long sequence, Runnable task) {
+            this.priority = priority;
+            this.sequence = sequence;
+            this.task = task;
+        }
+
+        @Override
+        public void run() {
+            task.run();
+        }
+
+        @Override
+        public int compareTo(PrioritizedTask other) {
+            int result = priority.compareTo(other.priority);
+            return result != 0 ? result : Long.compare(sequence, other.sequence);
+        }
+    }
+}
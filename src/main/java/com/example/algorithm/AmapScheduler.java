@@ -0,0 +1,114 @@
+package com.example.algorithm;
+
+import com.google.gson.JsonObject;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
+
+/**
+ * 所有高德接口请求的调度器。
+ * 每个接口单独按令牌桶限流并统计每日调用量，交互请求优先；被限流的请求按指数退避重试，
+ * 其他失败状态抛出{@link AmapException}
+ */
+@Slf4j
+@Component
+public class AmapScheduler {
+    /**
+     * 高德接口
+     */
+    public enum Endpoint {
+        GEOCODE, DISTANCE
+    }
+
+    /**
+     * 访问过于频繁、超出并发或QPS限制，可以稍后重试的状态码
+     */
+    private static final Set<String> THROTTLED = Set.of("10004", "10014", "10019", "10020", "10021");
+    /**
+     * 超出每日调用量
+     */
+    private static final String DAILY_QUERY_OVER_LIMIT = "10003";
+
+    private final Map<Endpoint, TokenBucket> buckets = new EnumMap<>(Endpoint.class);
+    private final int maxRetries;
+    private final long backoffMillis;
+    /**
+     * 每个接口每日调用上限，0表示不限制
+     */
+    private final long dailyQuota;
+    private final Map<Endpoint, Long> dailyCounts = new EnumMap<>(Endpoint.class);
+    private LocalDate today = LocalDate.now();
+
+    public AmapScheduler(@Value("${amap.rate-limit.geocode-qps:20}") double geocodeQps,
+                         @Value("${amap.rate-limit.distance-qps:20}") double distanceQps,
+                         @Value("${amap.rate-limit.max-retries:3}") int maxRetries,
+                         @Value("${amap.rate-limit.backoff:500ms}") Duration backoff,
+                         @Value("${amap.rate-limit.daily-quota:0}") long dailyQuota) {
+        buckets.put(Endpoint.GEOCODE, new TokenBucket(geocodeQps, Math.max(1, geocodeQps)));
+        buckets.put(Endpoint.DISTANCE, new TokenBucket(distanceQps, Math.max(1, distanceQps)));
+        this.maxRetries = maxRetries;
+        this.backoffMillis = backoff.toMillis();
+        this.dailyQuota = dailyQuota;
+    }
+
+    /**
+     * 按限流执行请求
+     *
+     * @param endpoint 接口
+     * @param request  实际请求，返回高德的响应
+     * @return status为1的响应
+     */
+    public JsonObject call(Endpoint endpoint, Supplier<JsonObject> request) {
+        TokenBucket bucket = buckets.get(endpoint);
+        AmapPriority priority = AmapPriority.current();
+        for (int attempt = 0; ; attempt++) {
+            try {
+                bucket.acquire(priority);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("等待限流令牌时被中断", e);
+            }
+            consumeQuota(endpoint);
+            JsonObject response = request.get();
+            if (response.get("status").getAsInt() == 1) {
+                return response;
+            }
+            String infocode = response.has("infocode") ? response.get("infocode").getAsString() : "";
+            String info = response.has("info") ? response.get("info").getAsString() : "";
+            if (!THROTTLED.contains(infocode) || attempt >= maxRetries) {
+                throw new AmapException(infocode, info);
+            }
+            long delay = (backoffMillis << attempt) + ThreadLocalRandom.current().nextLong(backoffMillis + 1);
+            log.warn("amap {} throttled:{}, retry after {}ms", endpoint, infocode, delay);
+            try {
+                Thread.sleep(delay);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new AmapException(infocode, info);
+            }
+        }
+    }
+
+    /**
+     * 统计每日调用量，超出配额时直接失败，不再请求高德
+     */
+    private synchronized void consumeQuota(Endpoint endpoint) {
+        LocalDate now = LocalDate.now();
+        if (!now.equals(today)) {
+            today = now;
+            dailyCounts.clear();
+        }
+        long count = dailyCounts.merge(endpoint, 1L, Long::sum);
+        if (dailyQuota > 0 && count > dailyQuota) {
+            throw new AmapException(DAILY_QUERY_OVER_LIMIT, "本地统计的每日调用量已用完");
+        }
+    }
+}
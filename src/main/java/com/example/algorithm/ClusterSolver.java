@@ -0,0 +1,529 @@
+package com.example.algorithm;
+
+import com.example.algorithm.VehicleRoutingProblem.Path;
+import com.example.algorithm.VehicleRoutingProblem.Route;
+import com.example.model.UserVo;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * 先分区后排线：客户数量很多时拆成若干个小问题分别求解。
+ * <ol>
+ *     <li>分区：客户按相对仓库的极坐标(方位角、距离)递归二分，每次沿跨度较大的方向切开，两边需求量按分区数量的比例分配，
+ *     得到需求量大致相等、形状紧凑的分区，每个分区最多约{@code vrp.solver.cluster.size}个客户。只分成扇区的话，
+ *     客户越多扇区越细长，边界也越长</li>
+ *     <li>排线：每个分区用已有的求解器(默认遗传算法)在自己的线程上独立求解，距离矩阵也只在分区内计算</li>
+ *     <li>拼接：各分区的线路合并为完整方案</li>
+ *     <li>边界改进：客户的几个最近邻(用{@link KdTree}查找)属于另一个分区时，这两个分区相邻，客户所在的线路是边界线路。
+ *     相邻分区的边界线路合在一起重新求解，更好时替换原来的线路。分区对分轮进行，同一轮的分区对互不重叠，可以并行</li>
+ * </ol>
+ * 子问题的大小有上限，距离矩阵和求解的工作量都随客户数量线性增长。
+ * 有时间上限时，{@link #CLUSTER_SHARE}的时间用于排线，其余用于边界改进，时间按每个线程依次处理的子问题数量平分
+ */
+@Slf4j
+@Component
+public class ClusterSolver implements Solver {
+    public static final String NAME = "cluster";
+
+    /**
+     * 有时间上限时排线阶段所占的比例
+     */
+    private static final double CLUSTER_SHARE = 0.7;
+    /**
+     * 判断边界线路时每个客户查找的近邻数量
+     */
+    private static final int BOUNDARY_NEIGHBORS = 5;
+    /**
+     * 等待子问题时检查取消的间隔，单位：毫秒
+     */
+    private static final long POLL_INTERVAL = 100;
+
+    private final List<Solver> solvers;
+    private final String engine;
+    private final int clusterSize;
+    private final int threads;
+
+    /**
+     * @param solvers     所有求解器，按名称选择求解子问题的求解器
+     * @param engine      求解子问题的求解器名称
+     * @param clusterSize 每个分区的客户数量上限
+     * @param threads     同时求解的子问题数量，不大于0时为CPU核数
+     */
+    public ClusterSolver(List<Solver> solvers,
+                         @Value("${vrp.solver.cluster.engine:ga}") String engine,
+                         @Value("${vrp.solver.cluster.size:200}") int clusterSize,
+                         @Value("${vrp.solver.cluster.threads:0}") int threads) {
+        if (NAME.equals(engine) || clusterSize < 1) {
+            throw new IllegalArgumentException("分区求解参数错误, engine:" + engine + ", size:" + clusterSize);
+        }
+        this.solvers = solvers;
+        this.engine = engine;
+        this.clusterSize = clusterSize;
+        this.threads = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public Map<String, Object> solve(List<UserVo> customers, DistanceProvider distanceProvider,
+                                     SolverOptions options, SolverControl<Route> control) {
+        Solver solver = solver();
+        if (customers.size() <= clusterSize) {
+            return solver.solve(customers, distanceProvider, options, control);
+        }
+        Decomposition decomposition = new Decomposition(customers, clusterSize);
+        SplittableRandom random = new SplittableRandom(options.resolveSeed());
+        long clusterTime = control.getTimeLimit() > 0 ? (long) (control.getTimeLimit() * CLUSTER_SHARE) : 0;
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, decomposition.clusters));
+        int solved = 0;
+        int improved = 0;
+        try {
+            control.start(0);
+            List<List<UserVo>> problems = new ArrayList<>(decomposition.clusters);
+            for (int c = 0; c < decomposition.clusters; c++) {
+                problems.add(decomposition.members(c));
+            }
+            List<List<Tour>> results = solveAll(solver, problems, distanceProvider, random, clusterTime, control, executor);
+            for (int c = 0; c < results.size(); c++) {
+                decomposition.tours.get(c).addAll(results.get(c));
+            }
+            solved += problems.size();
+            offer(control, solved, decomposition);
+
+            List<List<int[]>> rounds = decomposition.rounds();
+            long roundTime = control.getTimeLimit() > 0 && !rounds.isEmpty()
+                    ? (control.getTimeLimit() - clusterTime) / rounds.size() : 0;
+            for (int round = 0; round < rounds.size() && !control.isCancelled(); round++) {
+                List<int[]> pairs = new ArrayList<>();
+                List<List<Tour>> boundaries = new ArrayList<>();
+                problems.clear();
+                for (int[] pair : rounds.get(round)) {
+                    List<Tour> boundary = decomposition.boundary(pair[0], pair[1]);
+                    if (!boundary.isEmpty()) {
+                        pairs.add(pair);
+                        boundaries.add(boundary);
+                        problems.add(customersOf(boundary));
+                    }
+                }
+                results = solveAll(solver, problems, distanceProvider, random, roundTime, control, executor);
+                solved += problems.size();
+                for (int p = 0; p < pairs.size(); p++) {
+                    List<Tour> replacement = results.get(p);
+                    if (replacement != null && cost(replacement) < cost(boundaries.get(p)) - 1e-6) {
+                        decomposition.replace(pairs.get(p), boundaries.get(p), replacement);
+                        improved++;
+                    }
+                }
+                offer(control, solved, decomposition);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        // 子问题各自按分到的时间结束，这里只区分被取消和正常跑完所有轮次
+        control.finish(control.isCancelled() ? SolverControl.StopReason.CANCELLED : SolverControl.StopReason.COMPLETED);
+        log.info("cluster solver stopped, reason:{}, engine:{}, clusters:{}, sub-problems:{}, improved boundaries:{}, cost:{}",
+                control.getStopReason(), engine, decomposition.clusters, solved, improved, control.getBestCost());
+        Route best = control.getBest();
+        Map<String, Object> result = new HashMap<>();
+        result.put("bestRoute", best);
+        result.put("routs", Collections.singletonList(best));
+        return result;
+    }
+
+    private Solver solver() {
+        for (Solver solver : solvers) {
+            if (solver.getName().equals(engine)) {
+                return solver;
+            }
+        }
+        throw new IllegalArgumentException("未知的求解器: " + engine);
+    }
+
+    /**
+     * 在线程池中求解所有子问题，等待期间总的求解被取消时取消所有子问题
+     *
+     * @param timeLimit 本阶段的时间，不大于0时子问题不限时
+     * @return 与problems对应的线路，子问题没有解时为null
+     */
+    private List<List<Tour>> solveAll(Solver solver, List<List<UserVo>> problems, DistanceProvider distanceProvider,
+                                      SplittableRandom random, long timeLimit, SolverControl<Route> control,
+                                      ExecutorService executor) {
+        int waves = (problems.size() + threads - 1) / threads;
+        List<SolverControl<Route>> controls = new ArrayList<>(problems.size());
+        List<CompletableFuture<List<Tour>>> futures = new ArrayList<>(problems.size());
+        for (List<UserVo> problem : problems) {
+            SolverControl<Route> child = new SolverControl<>();
+            child.setMaxGenerations(control.getMaxGenerations());
+            child.setStagnation(control.getStagnation());
+            child.setTimeLimit(timeLimit > 0 ? Math.max(1, timeLimit / waves) : 0);
+            SolverOptions options = new SolverOptions();
+            options.setSeed(random.nextLong());
+            // 子问题之间已经并行，子问题内部单线程
+            options.setParallel(false);
+            controls.add(child);
+            futures.add(CompletableFuture.supplyAsync(() -> solve(solver, problem, distanceProvider, options, child), executor));
+        }
+        CompletableFuture<Void> all = CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0]));
+        boolean interrupted = false;
+        while (!all.isDone()) {
+            try {
+                all.get(POLL_INTERVAL, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException | ExecutionException e) {
+                // 超时继续等待，异常在join时抛出
+            } catch (InterruptedException e) {
+                interrupted = true;
+                control.cancel();
+            }
+            if (control.isCancelled()) {
+                controls.forEach(SolverControl::cancel);
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        List<List<Tour>> results = new ArrayList<>(futures.size());
+        for (CompletableFuture<List<Tour>> future : futures) {
+            results.add(future.join());
+        }
+        return results;
+    }
+
+    /**
+     * 求解一个子问题，并按子问题的距离矩阵计算每条线路的距离
+     */
+    private static List<Tour> solve(Solver solver, List<UserVo> customers, DistanceProvider distanceProvider,
+                                    SolverOptions options, SolverControl<Route> control) {
+        DistanceMatrix matrix = distanceProvider.matrix(customers);
+        solver.solve(customers, list -> matrix, options, control);
+        Route best = control.getBest();
+        if (best == null) {
+            return null;
+        }
+        Map<UserVo, Integer> slots = new IdentityHashMap<>(customers.size());
+        for (int i = 0; i < customers.size(); i++) {
+            slots.put(customers.get(i), i + 1);
+        }
+        List<Tour> tours = new ArrayList<>(best.getPaths().size());
+        for (Path path : best.getPaths()) {
+            double cost = 0;
+            int prev = DistanceMatrix.DEPOT;
+            for (UserVo user : path.getNodeList()) {
+                int slot = slots.get(user);
+                cost += matrix.distance(prev, slot);
+                prev = slot;
+            }
+            cost += matrix.distance(prev, DistanceMatrix.DEPOT);
+            tours.add(new Tour(path, cost));
+        }
+        return tours;
+    }
+
+    /**
+     * 把当前拼接的方案记录为最优解
+     */
+    private static void offer(SolverControl<Route> control, int solved, Decomposition decomposition) {
+        List<Path> paths = new ArrayList<>();
+        double cost = 0;
+        for (List<Tour> tours : decomposition.tours) {
+            for (Tour tour : tours) {
+                paths.add(tour.path);
+                cost += tour.cost;
+            }
+        }
+        Route route = new Route(paths, "最优方案");
+        route.setFitness(1 / cost);
+        control.update(solved, cost, () -> route);
+    }
+
+    private static List<UserVo> customersOf(List<Tour> tours) {
+        List<UserVo> customers = new ArrayList<>();
+        for (Tour tour : tours) {
+            customers.addAll(tour.path.getNodeList());
+        }
+        return customers;
+    }
+
+    private static double cost(List<Tour> tours) {
+        double cost = 0;
+        for (Tour tour : tours) {
+            cost += tour.cost;
+        }
+        return cost;
+    }
+
+    /**
+     * 一辆车的线路及其行驶距离
+     */
+    private static class Tour {
+        final Path path;
+        final double cost;
+
+        Tour(Path path, double cost) {
+            this.path = path;
+            this.cost = cost;
+        }
+    }
+
+    /**
+     * 客户的分区及各分区当前的线路
+     */
+    private static class Decomposition {
+        private final List<UserVo> customers;
+        private final int n;
+        /**
+         * 分区数量
+         */
+        final int clusters;
+        /**
+         * 客户(槽位1..n)所在的分区，边界改进后也不变，用于判断客户靠近哪个边界
+         */
+        private final int[] clusterOf;
+        private final Map<UserVo, Integer> slots;
+        /**
+         * 每个客户的{@link #BOUNDARY_NEIGHBORS}个最近邻，客户c的近邻在[(c-1)*K, c*K)
+         */
+        private final int[] neighbors;
+        /**
+         * 以最大角度间隙为起点的方位角，单位：弧度
+         */
+        private final double[] angles;
+        /**
+         * 到仓库的直线距离，单位：米
+         */
+        private final double[] radii;
+        private final long[] keys;
+        /**
+         * 各分区当前的线路
+         */
+        final List<List<Tour>> tours;
+
+        Decomposition(List<UserVo> customers, int clusterSize) {
+            this.customers = customers;
+            this.n = customers.size();
+            double[] longitudes = new double[n + 1];
+            double[] latitudes = new double[n + 1];
+            String[] origin = GeoregeoApi.ORIGIN.split(",");
+            longitudes[DistanceMatrix.DEPOT] = Double.parseDouble(origin[0]);
+            latitudes[DistanceMatrix.DEPOT] = Double.parseDouble(origin[1]);
+            int[] all = new int[n];
+            slots = new IdentityHashMap<>(n);
+            for (int i = 0; i < n; i++) {
+                UserVo user = customers.get(i);
+                longitudes[i + 1] = user.getLongitude().doubleValue();
+                latitudes[i + 1] = user.getLatitude().doubleValue();
+                all[i] = i + 1;
+                slots.put(user, i + 1);
+            }
+            KdTree tree = new KdTree(all, longitudes, latitudes,
+                    longitudes[DistanceMatrix.DEPOT], latitudes[DistanceMatrix.DEPOT]);
+            this.angles = new double[n + 1];
+            this.radii = new double[n + 1];
+            this.keys = new long[n];
+            polar(tree, longitudes, latitudes);
+            this.clusterOf = new int[n + 1];
+            this.clusters = partition(all, 0, n, (n + clusterSize - 1) / clusterSize, 0);
+            this.neighbors = new int[n * BOUNDARY_NEIGHBORS];
+            boolean[] self = new boolean[n + 1];
+            int[] found = new int[BOUNDARY_NEIGHBORS];
+            double[] squares = new double[BOUNDARY_NEIGHBORS];
+            for (int c = 1; c <= n; c++) {
+                self[c] = true;
+                int count = tree.nearest(longitudes[c], latitudes[c], BOUNDARY_NEIGHBORS, self, found, squares);
+                self[c] = false;
+                for (int k = 0; k < BOUNDARY_NEIGHBORS; k++) {
+                    // 客户不足时用自己补齐，不影响边界判断
+                    neighbors[(c - 1) * BOUNDARY_NEIGHBORS + k] = k < count ? found[k] : c;
+                }
+            }
+            this.tours = new ArrayList<>(clusters);
+            for (int c = 0; c < clusters; c++) {
+                tours.add(new ArrayList<>());
+            }
+        }
+
+        /**
+         * 计算客户相对仓库的极坐标，方位角从最大的角度间隙处起算，使分区不会跨过客户最稀疏的方向
+         */
+        private void polar(KdTree tree, double[] longitudes, double[] latitudes) {
+            for (int c = 1; c <= n; c++) {
+                double x = tree.x(longitudes[c]);
+                double y = tree.y(latitudes[c]);
+                angles[c] = Math.atan2(y, x) + Math.PI;
+                radii[c] = Math.sqrt(x * x + y * y);
+                keys[c - 1] = (long) Float.floatToIntBits((float) angles[c]) << 32 | c;
+            }
+            Arrays.sort(keys);
+            double start = 0;
+            double widest = -1;
+            for (int i = 0; i < n; i++) {
+                double from = angles[(int) keys[i]];
+                double to = angles[(int) keys[(i + 1) % n]];
+                double gap = i + 1 < n ? to - from : to + 2 * Math.PI - from;
+                if (gap > widest) {
+                    widest = gap;
+                    start = to;
+                }
+            }
+            for (int c = 1; c <= n; c++) {
+                angles[c] -= start;
+                if (angles[c] < 0) {
+                    angles[c] += 2 * Math.PI;
+                }
+            }
+        }
+
+        /**
+         * 递归二分：沿方位角和距离中跨度(米)较大的方向排序，按两边分区数量的比例切分需求量
+         *
+         * @param items 客户槽位，[from, to)为要划分的部分
+         * @param count 分成的分区数量
+         * @param next  第一个分区的编号
+         * @return 下一个未使用的分区编号
+         */
+        private int partition(int[] items, int from, int to, int count, int next) {
+            if (count <= 1 || to - from <= 1) {
+                for (int i = from; i < to; i++) {
+                    clusterOf[items[i]] = next;
+                }
+                return next + 1;
+            }
+            double minAngle = Double.MAX_VALUE;
+            double maxAngle = 0;
+            double minRadius = Double.MAX_VALUE;
+            double maxRadius = 0;
+            double sumRadius = 0;
+            double total = 0;
+            for (int i = from; i < to; i++) {
+                int c = items[i];
+                minAngle = Math.min(minAngle, angles[c]);
+                maxAngle = Math.max(maxAngle, angles[c]);
+                minRadius = Math.min(minRadius, radii[c]);
+                maxRadius = Math.max(maxRadius, radii[c]);
+                sumRadius += radii[c];
+                total += demand(c);
+            }
+            boolean byAngle = (maxAngle - minAngle) * sumRadius / (to - from) >= maxRadius - minRadius;
+            for (int i = from; i < to; i++) {
+                int c = items[i];
+                keys[i] = (long) Float.floatToIntBits((float) (byAngle ? angles[c] : radii[c])) << 32 | c;
+            }
+            Arrays.sort(keys, from, to);
+            for (int i = from; i < to; i++) {
+                items[i] = (int) keys[i];
+            }
+            int left = count / 2;
+            double target = total * left / count;
+            double accumulated = 0;
+            int cut = from + 1;
+            while (cut < to - 1 && accumulated + demand(items[cut - 1]) + demand(items[cut]) / 2 <= target) {
+                accumulated += demand(items[cut - 1]);
+                cut++;
+            }
+            next = partition(items, from, cut, left, next);
+            return partition(items, cut, to, count - left, next);
+        }
+
+        private double demand(int slot) {
+            return customers.get(slot - 1).getDemands().doubleValue();
+        }
+
+        List<UserVo> members(int cluster) {
+            List<UserVo> members = new ArrayList<>();
+            for (int c = 1; c <= n; c++) {
+                if (clusterOf[c] == cluster) {
+                    members.add(customers.get(c - 1));
+                }
+            }
+            return members;
+        }
+
+        /**
+         * 相邻的分区对，按近邻关系跨过边界的次数从多到少贪心地分成若干轮，同一轮中的分区对互不重叠
+         */
+        List<List<int[]>> rounds() {
+            Map<Long, Integer> links = new HashMap<>();
+            for (int c = 1; c <= n; c++) {
+                for (int k = 0; k < BOUNDARY_NEIGHBORS; k++) {
+                    int a = clusterOf[c];
+                    int b = clusterOf[neighbors[(c - 1) * BOUNDARY_NEIGHBORS + k]];
+                    if (a != b) {
+                        links.merge((long) Math.min(a, b) << 32 | Math.max(a, b), 1, Integer::sum);
+                    }
+                }
+            }
+            List<Map.Entry<Long, Integer>> adjacent = new ArrayList<>(links.entrySet());
+            adjacent.sort(Map.Entry.<Long, Integer>comparingByValue().reversed().thenComparing(Map.Entry.comparingByKey()));
+            List<List<int[]>> rounds = new ArrayList<>();
+            List<boolean[]> busy = new ArrayList<>();
+            for (Map.Entry<Long, Integer> entry : adjacent) {
+                int a = (int) (entry.getKey() >>> 32);
+                int b = (int) (long) entry.getKey();
+                int round = 0;
+                while (round < rounds.size() && (busy.get(round)[a] || busy.get(round)[b])) {
+                    round++;
+                }
+                if (round == rounds.size()) {
+                    rounds.add(new ArrayList<>());
+                    busy.add(new boolean[clusters]);
+                }
+                rounds.get(round).add(new int[]{a, b});
+                busy.get(round)[a] = true;
+                busy.get(round)[b] = true;
+            }
+            return rounds;
+        }
+
+        /**
+         * 两个分区中靠近边界的线路：线路上有客户的近邻属于另一个分区
+         */
+        List<Tour> boundary(int a, int b) {
+            List<Tour> boundary = new ArrayList<>();
+            for (int cluster : new int[]{a, b}) {
+                int other = cluster == a ? b : a;
+                for (Tour tour : tours.get(cluster)) {
+                    if (touches(tour, other)) {
+                        boundary.add(tour);
+                    }
+                }
+            }
+            return boundary;
+        }
+
+        private boolean touches(Tour tour, int other) {
+            for (UserVo user : tour.path.getNodeList()) {
+                int slot = slots.get(user);
+                for (int k = 0; k < BOUNDARY_NEIGHBORS; k++) {
+                    if (clusterOf[neighbors[(slot - 1) * BOUNDARY_NEIGHBORS + k]] == other) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+
+        /**
+         * 用重新求解的线路替换两个分区的边界线路，新线路归入其多数客户所在的分区
+         */
+        void replace(int[] pair, List<Tour> boundary, List<Tour> replacement) {
+            for (int cluster : pair) {
+                tours.get(cluster).removeAll(boundary);
+            }
+            for (Tour tour : replacement) {
+                int inFirst = 0;
+                for (UserVo user : tour.path.getNodeList()) {
+                    if (clusterOf[slots.get(user)] == pair[0]) {
+                        inFirst++;
+                    }
+                }
+                tours.get(2 * inFirst >= tour.path.getNodeList().size() ? pair[0] : pair[1]).add(tour);
+            }
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.example.algorithm;
+
+import com.example.model.UserVo;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * 坐标规范化工具。
+ * 经纬度统一按百万分之一度取整为long，同一个点无论BigDecimal精度如何都得到相同的值
+ */
+public final class Coordinates {
+    private static final int SCALE = 6;
+
+    private Coordinates() {
+    }
+
+    /**
+     * 规范化经度或纬度
+     *
+     * @param degrees 经度或纬度，单位：度
+     * @return 单位：百万分之一度
+     */
+    public static long canonical(BigDecimal degrees) {
+        return degrees.setScale(SCALE, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+    }
+
+    /**
+     * 将规范化后的经纬度合并为一个long，高32位为经度，低32位为纬度
+     */
+    public static long pack(long longitude, long latitude) {
+        return (longitude << 32) | (latitude & 0xFFFFFFFFL);
+    }
+
+    public static long pack(UserVo user) {
+        return pack(canonical(user.getLongitude()), canonical(user.getLatitude()));
+    }
+
+    /**
+     * 将"经度,纬度"格式的坐标合并为一个long
+     */
+    public static long pack(String location) {
+        String[] parts = location.split(",");
+        return pack(canonical(new BigDecimal(parts[0].trim())), canonical(new BigDecimal(parts[1].trim())));
+    }
+
+    public static long longitude(long point) {
+        return point >> 32;
+    }
+
+    public static long latitude(long point) {
+        return (int) point;
+    }
+
+    /**
+     * 64位散列，用于计算坐标集合的指纹
+     */
+    public static long hash(long point) {
+        long h = point * 0x9E3779B97F4A7C15L;
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
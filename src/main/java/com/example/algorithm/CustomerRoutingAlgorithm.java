@@ -11,6 +11,8 @@ public class CustomerRoutingAlgorithm {
     private static final double MUTATION_RATE = 0.01;
     private static final int TOURNAMENT_SIZE = 5;
     private static final int MAX_GENERATIONS = 1000;
+    // 局部搜索时每个客户考虑的近邻数量
+    private static final int NEIGHBORS = 10;
 
     private static final Random random = new Random();
 
@@ -45,16 +47,36 @@ public class CustomerRoutingAlgorithm {
      * @return 最佳路线。
      */
     public static Route findBestRoute(int[][] locations, int[] demands) {
-        Population population = new Population(POPULATION_SIZE, locations.length);
+        return findBestRoute(locations, demands, new SolverControl<>());
+    }
+
+    /**
+     * 使用遗传算法找到满足所有客户需求的最短路径，满足终止条件时停止。
+     *
+     * @param locations 客户的位置。
+     * @param demands   客户的需求量。
+     * @param control   终止条件，求解过程中可以从中读取当前最佳路线。
+     * @return 最佳路线。
+     */
+    public static Route findBestRoute(int[][] locations, int[] demands, SolverControl<Route> control) {
+        Population population = new Population(POPULATION_SIZE, locations.length, DistanceMatrix.euclidean(locations));
         population.initialize(locations);
+        control.start(MAX_GENERATIONS);
 
         int generationCount = 0;
-        while (generationCount < MAX_GENERATIONS) {
-            population.evolve(demands, locations);
+        while (!control.isFinished(generationCount)) {
+            population.evolve(demands);
             generationCount++;
+            // 路线对象在之后的代中会被复用，需要复制一份作为快照
+            Route fittest = population.getFittestRoute();
+            if (control.improves(fittest.getLength())) {
+                Route snapshot = fittest.copy();
+                control.update(generationCount, fittest.getLength(), () -> snapshot);
+            }
         }
 
-        return population.getFittestRoute();
+        Route best = control.getBest();
+        return best != null ? best : population.getFittestRoute();
     }
 
     /**
@@ -64,6 +86,10 @@ public class CustomerRoutingAlgorithm {
      */
     static class Route {
         private final int[] path;
+        /**
+         * 路线长度，邻域操作后增量更新
+         */
+        private double length;
         /**
          * 适应度
          */
@@ -85,6 +111,17 @@ public class CustomerRoutingAlgorithm {
             this.fitness = fitness;
         }
 
+        public double getLength() {
+            return length;
+        }
+
+        public Route copy() {
+            Route copy = new Route(path.clone());
+            copy.length = length;
+            copy.fitness = fitness;
+            return copy;
+        }
+
         @Override
         public String toString() {
             return Arrays.toString(path) + ", Fitness: " + fitness;
@@ -95,20 +132,60 @@ public class CustomerRoutingAlgorithm {
      * Population类表示一群路线。
      * 遗传算法通过对这个群体进行选择、交叉和变异操作，来生成新的群体。
      * 这个过程模拟了自然界的进化过程。
+     * 当前一代和下一代使用两组预先分配的路线，每代交换角色，进化过程中不再分配对象。
      */
     static class Population {
         private Route[] routes;
+        /**
+         * 下一代的缓冲区
+         */
+        private Route[] offspring;
+        private final DistanceMatrix matrix;
+        private final TourMove.Swap swap;
+        private final TourMove.Relocate relocate;
+        private final TourMove.TwoOpt twoOpt;
+        /**
+         * 每个客户最近的几个客户
+         */
+        private final int[][] neighbors;
+        /**
+         * 局部搜索时每个客户在路径中的位置
+         */
+        private final int[] position;
+        /**
+         * 局部搜索时最近没有找到改进的客户
+         */
+        private final boolean[] dontLook;
+        /**
+         * 交叉时子代中已有的客户
+         */
+        private final boolean[] used;
+        /**
+         * 货车是否超载，所有路线都经过全部客户，因此对所有路线相同
+         */
+        private boolean overloaded;
 
         /**
          * 构造函数，初始化一群路线。
          *
          * @param populationSize 人口数量。
          * @param locationsCount 位置数量。
+         * @param matrix         位置之间的距离。
          */
-        public Population(int populationSize, int locationsCount) {
+        public Population(int populationSize, int locationsCount, DistanceMatrix matrix) {
+            this.matrix = matrix;
+            this.swap = new TourMove.Swap(matrix);
+            this.relocate = new TourMove.Relocate(matrix);
+            this.twoOpt = new TourMove.TwoOpt(matrix);
+            this.neighbors = LocalSearch.nearestNeighbors(matrix, NEIGHBORS);
+            this.position = new int[locationsCount];
+            this.dontLook = new boolean[locationsCount];
+            this.used = new boolean[locationsCount];
             routes = new Route[populationSize];
+            offspring = new Route[populationSize];
             for (int i = 0; i < populationSize; i++) {
                 routes[i] = new Route(new int[locationsCount]);
+                offspring[i] = new Route(new int[locationsCount]);
             }
         }
 
@@ -133,21 +210,28 @@ public class CustomerRoutingAlgorithm {
 
         /**
          * 进化一代。
+         * 只有交叉生成的子代需要完整计算一次长度，之后的变异和局部搜索都增量更新。
          *
-         * @param demands   客户的需求量。
-         * @param locations 客户的位置。
+         * @param demands 客户的需求量。
          */
-        public void evolve(int[] demands, int[][] locations) {
-            Route[] newRoutes = new Route[routes.length];
+        public void evolve(int[] demands) {
+            int load = 0;
+            for (int demand : demands) {
+                load += demand;
+            }
+            overloaded = load > 100; // 假设货车最大容量为100
             for (int i = 0; i < routes.length; i++) {
                 Route parent1 = selectParent();
                 Route parent2 = selectParent();
-                Route child = crossover(parent1, parent2);
+                Route child = offspring[i];
+                crossover(parent1, parent2, child);
+                evaluateRoute(child);
                 mutate(child);
-                evaluateRoute(child, demands, locations);
-                newRoutes[i] = child;
+                improve(child);
             }
-            routes = newRoutes;
+            Route[] current = routes;
+            routes = offspring;
+            offspring = current;
         }
 
         /**
@@ -156,23 +240,28 @@ public class CustomerRoutingAlgorithm {
          * @return 选择的父代。
          */
         private Route selectParent() {
-            Route[] tournament = new Route[TOURNAMENT_SIZE];
+            Route best = null;
             for (int i = 0; i < TOURNAMENT_SIZE; i++) {
-                tournament[i] = routes[random.nextInt(routes.length)];
+                Route candidate = routes[random.nextInt(routes.length)];
+                if (best == null || candidate.getFitness() > best.getFitness()) {
+                    best = candidate;
+                }
             }
-            Arrays.sort(tournament, Comparator.comparingDouble(Route::getFitness).reversed());
-            return tournament[0];
+            return best;
         }
 
         /**
          * 交叉两个父代，生成一个子代。
+         * 保留父代1的一段，父代2中其余的客户按顺序填入空位(值为0的位置)。
          *
          * @param parent1 父代1。
          * @param parent2 父代2。
-         * @return 生成的子代。
+         * @param child   写入结果的路线。
          */
-        private Route crossover(Route parent1, Route parent2) {
-            int[] childPath = new int[parent1.getPath().length];
+        private void crossover(Route parent1, Route parent2, Route child) {
+            int[] childPath = child.getPath();
+            Arrays.fill(childPath, 0);
+            Arrays.fill(used, false);
             int startPos = random.nextInt(parent1.getPath().length);
             int endPos = random.nextInt(parent1.getPath().length);
 
@@ -182,88 +271,157 @@ public class CustomerRoutingAlgorithm {
                 } else if (startPos > endPos && !(i < startPos && i > endPos)) {
                     childPath[i] = parent1.getPath()[i];
                 }
+                used[childPath[i]] = true;
             }
 
+            // 空位只会被依次填满，从上一个填入的位置继续查找即可
+            int empty = 0;
             for (int i = 0; i < parent2.getPath().length; i++) {
-                if (!containsLocation(childPath, parent2.getPath()[i])) {
-                    for (int j = 0; j < childPath.length; j++) {
-                        if (childPath[j] == 0) {
-                            childPath[j] = parent2.getPath()[i];
-                            break;
-                        }
-                    }
+                int location = parent2.getPath()[i];
+                if (location == 0 || used[location]) {
+                    continue;
+                }
+                while (empty < childPath.length && childPath[empty] != 0) {
+                    empty++;
+                }
+                if (empty < childPath.length) {
+                    childPath[empty] = location;
+                    used[location] = true;
                 }
             }
-
-            return new Route(childPath);
         }
 
         /**
-         * 检查路径中是否包含某个位置。
+         * 变异路线。
          *
-         * @param path     路径。
-         * @param location 位置。
-         * @return 路径中是否包含该位置。
+         * @param route 路线。
          */
-        private boolean containsLocation(int[] path, int location) {
-            for (int value : path) {
-                if (value == location) {
-                    return true;
+        private void mutate(Route route) {
+            int[] path = route.getPath();
+            for (int i = 1; i < path.length; i++) {
+                if (random.nextDouble() < MUTATION_RATE) {
+                    int index1 = random.nextInt(path.length - 1) + 1;
+                    int index2 = random.nextInt(path.length - 1) + 1;
+                    if (index1 != index2) {
+                        swap.set(index1, index2);
+                        apply(route, swap, swap.delta(path));
+                    }
                 }
             }
-            return false;
         }
 
         /**
-         * 变异路线。
+         * 局部搜索：对每个客户只尝试让它与最近的几个客户相邻的2-opt和移动操作，执行能缩短路线的操作，
+         * 没有改进的客户标记为don't-look，直到相邻的位置发生变化。
          *
          * @param route 路线。
          */
-        private void mutate(Route route) {
-            for (int i = 1; i < route.getPath().length; i++) {
-                if (Math.random() < MUTATION_RATE) {
-                    int index1 = random.nextInt(route.getPath().length - 1) + 1;
-                    int index2 = random.nextInt(route.getPath().length - 1) + 1;
-                    int temp = route.getPath()[index1];
-                    route.getPath()[index1] = route.getPath()[index2];
-                    route.getPath()[index2] = temp;
+        private void improve(Route route) {
+            int[] path = route.getPath();
+            for (int i = 0; i < path.length; i++) {
+                position[path[i]] = i;
+                dontLook[path[i]] = false;
+            }
+            boolean changed = true;
+            while (changed) {
+                changed = false;
+                for (int u = 0; u < path.length; u++) {
+                    if (dontLook[u]) {
+                        continue;
+                    }
+                    if (improveCustomer(route, u)) {
+                        changed = true;
+                    } else {
+                        dontLook[u] = true;
+                    }
                 }
             }
         }
 
         /**
-         * 评估路线的适应度。
+         * 对一个客户尝试近邻操作，执行第一个能缩短路线的操作。
          *
-         * @param route     路线。
-         * @param demands   客户的需求量。
-         * @param locations 客户的位置。
+         * @param route 路线。
+         * @param u     客户。
+         * @return 是否执行了操作。
          */
-        private void evaluateRoute(Route route, int[] demands, int[][] locations) {
-            double fitness = 0;
-            for (int i = 0; i < route.getPath().length - 1; i++) {
-                fitness += distance(locations[route.getPath()[i]], locations[route.getPath()[i + 1]]);
+        private boolean improveCustomer(Route route, int u) {
+            int[] path = route.getPath();
+            int i = position[u];
+            if (i == 0 || u >= neighbors.length) {
+                return false;
             }
-            route.setFitness(1 / fitness);
-            // 检查货车容量
-            int capacity = 0;
-            for (int i = 0; i < route.getPath().length; i++) {
-                capacity += demands[route.getPath()[i]];
+            for (int v : neighbors[u]) {
+                int j = position[v];
+                if (j == 0) {
+                    continue;
+                }
+                // 反转一段使u与v相邻
+                if (j > i + 1 && tryMove(route, twoOpt.set(i + 1, j), u, v)) {
+                    return true;
+                }
+                if (j < i - 1 && tryMove(route, twoOpt.set(j, i - 1), u, v)) {
+                    return true;
+                }
+                // 把u移到v之后
+                if (j != i - 1 && tryMove(route, relocate.set(i, j < i ? j + 1 : j), u, v)) {
+                    return true;
+                }
             }
-            if (capacity > 100) { // 假设货车最大容量为100
-                route.setFitness(0);
+            return false;
+        }
+
+        /**
+         * 能缩短路线时执行操作，并重新记录客户位置。
+         *
+         * @param route 路线。
+         * @param move  邻域操作。
+         * @param u     操作涉及的客户。
+         * @param v     操作涉及的客户。
+         * @return 是否执行了操作。
+         */
+        private boolean tryMove(Route route, TourMove move, int u, int v) {
+            int[] path = route.getPath();
+            double delta = move.delta(path);
+            // 忽略浮点误差范围内的变化，避免来回执行
+            if (delta > -1e-9) {
+                return false;
             }
+            apply(route, move, delta);
+            for (int k = 0; k < path.length; k++) {
+                position[path[k]] = k;
+            }
+            dontLook[u] = false;
+            dontLook[v] = false;
+            return true;
         }
 
+        /**
+         * 执行邻域操作并增量更新路线长度和适应度。
+         *
+         * @param route 路线。
+         * @param move  邻域操作。
+         * @param delta 操作带来的长度变化。
+         */
+        private void apply(Route route, TourMove move, double delta) {
+            move.apply(route.getPath());
+            route.length += delta;
+            route.setFitness(overloaded ? 0 : 1 / route.length);
+        }
 
         /**
-         * 计算两个位置之间的距离。
+         * 评估路线的适应度。
          *
-         * @param loc1 位置1。
-         * @param loc2 位置2。
-         * @return 位置1和位置2之间的距离。
+         * @param route 路线。
          */
-        private double distance(int[] loc1, int[] loc2) {
-            return Math.sqrt(Math.pow(loc2[0] - loc1[0], 2) + Math.pow(loc2[1] - loc1[1], 2));
+        private void evaluateRoute(Route route) {
+            double length = 0;
+            for (int i = 0; i < route.getPath().length - 1; i++) {
+                length += matrix.distance(route.getPath()[i], route.getPath()[i + 1]);
+            }
+            route.length = length;
+            // 检查货车容量
+            route.setFitness(overloaded ? 0 : 1 / length);
         }
 
         /**
@@ -0,0 +1,50 @@
+package com.example.algorithm;
+
+/**
+ * 距离和时长的紧凑编码。
+ * 距离(米)和时长(秒)各占32位，合并为一个long，序列化后为8个字节
+ */
+public final class DistanceCodec {
+    /**
+     * 缺失的距离
+     */
+    public static final long MISSING = -1L;
+
+    private DistanceCodec() {
+    }
+
+    public static long pack(int distance, int duration) {
+        return ((long) distance << 32) | (duration & 0xFFFFFFFFL);
+    }
+
+    public static int distance(long packed) {
+        return (int) (packed >>> 32);
+    }
+
+    public static int duration(long packed) {
+        return (int) packed;
+    }
+
+    public static byte[] encode(long value) {
+        byte[] bytes = new byte[Long.BYTES];
+        for (int i = Long.BYTES - 1; i >= 0; i--) {
+            bytes[i] = (byte) value;
+            value >>>= 8;
+        }
+        return bytes;
+    }
+
+    /**
+     * @return 字节数组长度不为8时返回{@link #MISSING}
+     */
+    public static long decode(byte[] bytes) {
+        if (bytes == null || bytes.length != Long.BYTES) {
+            return MISSING;
+        }
+        long value = 0;
+        for (byte b : bytes) {
+            value = (value << 8) | (b & 0xFF);
+        }
+        return value;
+    }
+}
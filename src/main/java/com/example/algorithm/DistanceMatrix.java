@@ -0,0 +1,210 @@
+package com.example.algorithm;
+
+import com.example.model.DistanceResult;
+import com.example.model.UserVo;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * 仓库与客户之间的距离/时长矩阵。
+ * 槽位0为仓库，槽位i(i>=1)对应客户列表中第i-1个客户，
+ * 数据按行优先保存在一维数组中，迭代过程中只做数组读取。
+ */
+public class DistanceMatrix {
+    /**
+     * 仓库所在槽位
+     */
+    public static final int DEPOT = 0;
+
+    private final int size;
+    /**
+     * 路径距离，单位：米
+     */
+    private final double[] distances;
+    /**
+     * 预计行驶时间，单位：秒
+     */
+    private final int[] durations;
+
+    public DistanceMatrix(int size, double[] distances, int[] durations) {
+        if (distances.length != size * size || durations.length != size * size) {
+            throw new IllegalArgumentException("矩阵大小不匹配: " + size);
+        }
+        this.size = size;
+        this.distances = distances;
+        this.durations = durations;
+    }
+
+    /**
+     * 供不使用堆内数组保存数据的子类使用
+     */
+    protected DistanceMatrix(int size) {
+        this.size = size;
+        this.distances = null;
+        this.durations = null;
+    }
+
+    /**
+     * 一次性获取仓库和所有客户两两之间的距离。
+     * 先批量读取缓存(redis中每个起点一次HMGET)，未命中的起点按终点分组，每组最多{@link GeoregeoApi#MAX_ORIGINS}个起点请求一次，
+     * 各组请求并发执行，新获取的距离最后一次性写回缓存。
+     * 部分请求失败时，成功的点对仍然写回缓存，再抛出{@link IllegalStateException}说明缺少的点对
+     *
+     * @param customers   客户列表
+     * @param georegeoApi 高德接口
+     * @return 距离矩阵
+     */
+    public static DistanceMatrix build(List<UserVo> customers, GeoregeoApi georegeoApi) {
+        return build(customers, georegeoApi, null);
+    }
+
+    /**
+     * 只获取部分点对的距离，缓存未命中时也只请求这些点对
+     *
+     * @param customers   客户列表
+     * @param georegeoApi 高德接口
+     * @param required    需要的点对，下标为from*size+to，为null时获取全部
+     * @return 距离矩阵，不需要的点对为0
+     */
+    public static DistanceMatrix build(List<UserVo> customers, GeoregeoApi georegeoApi, boolean[] required) {
+        int size = customers.size() + 1;
+        String[] points = new String[size];
+        points[DEPOT] = GeoregeoApi.ORIGIN;
+        for (int i = 0; i < customers.size(); i++) {
+            points[i + 1] = location(customers.get(i));
+        }
+        double[] distances = new double[size * size];
+        int[] durations = new int[size * size];
+
+        List<String> locations = Arrays.asList(points);
+        long[] cached = georegeoApi.cachedMatrix(locations);
+        List<Batch> batches = new ArrayList<>();
+        for (int to = 0; to < size; to++) {
+            List<Integer> missing = new ArrayList<>();
+            for (int from = 0; from < size; from++) {
+                if (required != null && !required[from * size + to]) {
+                    continue;
+                }
+                long value = cached[from * size + to];
+                if (value != DistanceCodec.MISSING) {
+                    distances[from * size + to] = DistanceCodec.distance(value);
+                    durations[from * size + to] = DistanceCodec.duration(value);
+                } else {
+                    missing.add(from);
+                }
+            }
+            for (int start = 0; start < missing.size(); start += GeoregeoApi.MAX_ORIGINS) {
+                List<Integer> origins = missing.subList(start, Math.min(start + GeoregeoApi.MAX_ORIGINS, missing.size()));
+                List<String> batchLocations = new ArrayList<>(origins.size());
+                for (int from : origins) {
+                    batchLocations.add(points[from]);
+                }
+                batches.add(new Batch(origins, to, georegeoApi.distancesAsync(batchLocations, points[to])));
+            }
+        }
+        long[] fetched = new long[size * size];
+        Arrays.fill(fetched, DistanceCodec.MISSING);
+        int failed = 0;
+        String failure = null;
+        try {
+            for (Batch batch : batches) {
+                List<DistanceResult> results;
+                try {
+                    results = batch.results.join();
+                } catch (CompletionException | CancellationException e) {
+                    failed += batch.origins.size();
+                    if (failure == null) {
+                        failure = points[batch.origins.get(0)] + " -> " + points[batch.to] + ": " + e.getMessage();
+                    }
+                    continue;
+                }
+                if (results.size() != batch.origins.size()) {
+                    // 条数对不上时无法确定每条结果属于哪个起点，整组作废
+                    failed += batch.origins.size();
+                    if (failure == null) {
+                        failure = points[batch.origins.get(0)] + " -> " + points[batch.to] + ": 返回" + results.size()
+                                + "条结果，请求" + batch.origins.size() + "个起点";
+                    }
+                    continue;
+                }
+                for (int i = 0; i < batch.origins.size(); i++) {
+                    int from = batch.origins.get(i);
+                    DistanceResult result = results.get(i);
+                    if (result == null) {
+                        failed++;
+                        if (failure == null) {
+                            failure = points[from] + " -> " + points[batch.to];
+                        }
+                        continue;
+                    }
+                    int index = from * size + batch.to;
+                    distances[index] = Integer.parseInt(result.getDistance());
+                    durations[index] = Integer.parseInt(result.getDuration());
+                    fetched[index] = DistanceCodec.pack((int) distances[index], durations[index]);
+                }
+            }
+        } finally {
+            // 已经获取到的点对先写回缓存，失败后重试时不必再请求
+            georegeoApi.cacheMatrix(locations, fetched);
+        }
+        if (failed > 0) {
+            throw new IllegalStateException("获取距离失败" + failed + "个点对，例如: " + failure);
+        }
+        return new DistanceMatrix(size, distances, durations);
+    }
+
+    /**
+     * 平面坐标之间的直线距离，时长为0
+     *
+     * @param locations 每个槽位的坐标{x, y}
+     */
+    public static DistanceMatrix euclidean(int[][] locations) {
+        int size = locations.length;
+        double[] distances = new double[size * size];
+        for (int i = 0; i < size; i++) {
+            for (int j = 0; j < size; j++) {
+                distances[i * size + j] = Math.hypot(locations[j][0] - locations[i][0], locations[j][1] - locations[i][1]);
+            }
+        }
+        return new DistanceMatrix(size, distances, new int[size * size]);
+    }
+
+    /**
+     * 同一终点的一组起点及其请求结果
+     */
+    private static class Batch {
+        private final List<Integer> origins;
+        private final int to;
+        private final CompletableFuture<List<DistanceResult>> results;
+
+        Batch(List<Integer> origins, int to, CompletableFuture<List<DistanceResult>> results) {
+            this.origins = origins;
+            this.to = to;
+            this.results = results;
+        }
+    }
+
+    /**
+     * 客户坐标，格式：经度,纬度
+     */
+    public static String location(UserVo user) {
+        return user.getLongitude() + "," + user.getLatitude();
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public double distance(int from, int to) {
+        return distances[from * size + to];
+    }
+
+    public int duration(int from, int to) {
+        return durations[from * size + to];
+    }
+}
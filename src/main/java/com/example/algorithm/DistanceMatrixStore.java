@@ -0,0 +1,418 @@
+package com.example.algorithm;
+
+import com.example.model.UserVo;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.*;
+
+/**
+ * 基于内存映射文件的距离矩阵持久化存储。
+ * 文件以坐标集合的指纹命名，重启后直接映射文件即可读取距离，不需要再逐对查询redis；
+ * 出现新客户时在包含大部分请求坐标的文件中追加槽位(没有这样的文件时新建)，只有仍未知的点对通过delegate获取后写回文件。
+ * <p>
+ * 文件格式：64字节文件头，capacity个坐标(long)，capacity*capacity的距离(int，米)，capacity*capacity的时长(int，秒)
+ */
+@Slf4j
+public class DistanceMatrixStore implements DistanceProvider {
+    private static final int MAGIC = 0x444D5831;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 64;
+    /**
+     * 请求的坐标至少有这个比例已经在文件中时才复用该文件，否则新建文件，避免一个文件不断追加无关的坐标
+     */
+    private static final double MIN_OVERLAP = 0.5;
+    /**
+     * 保持映射的文件数量，超过时释放最久未使用的文件
+     */
+    private static final int MAX_OPEN = 4;
+    /**
+     * 单个映射区域不能超过2G
+     */
+    private static final int MAX_CAPACITY = 23170;
+    private static final int MIN_CAPACITY = 64;
+    private static final String SUFFIX = ".dmx";
+    /**
+     * 尚未获取的距离
+     */
+    private static final int UNKNOWN = -1;
+
+    private final Path directory;
+    private final DistanceProvider delegate;
+    private final Map<Path, Segment> segments = new LinkedHashMap<Path, Segment>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Path, Segment> eldest) {
+            // 不再引用的映射在垃圾回收时释放，还在等待delegate结果的文件暂不释放
+            return size() > MAX_OPEN && eldest.getValue().pending == 0;
+        }
+    };
+
+    public DistanceMatrixStore(Path directory, DistanceProvider delegate) {
+        this.directory = directory;
+        this.delegate = delegate;
+        try {
+            Files.createDirectories(directory);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * 只在查找槽位、追加坐标和写回结果时持有锁，delegate获取距离时不持有锁，多个求解可以并发获取各自缺少的点对
+     */
+    @Override
+    public DistanceMatrix matrix(List<UserVo> customers) {
+        long[] points = new long[customers.size() + 1];
+        points[DistanceMatrix.DEPOT] = Coordinates.pack(GeoregeoApi.ORIGIN);
+        for (int i = 0; i < customers.size(); i++) {
+            points[i + 1] = Coordinates.pack(customers.get(i));
+        }
+        try {
+            Segment segment;
+            int[] slots = new int[points.length];
+            boolean[] required;
+            synchronized (this) {
+                segment = reserve(points, slots);
+                required = segment.unknown(slots);
+                if (required == null) {
+                    return new MappedDistanceMatrix(segment.distances, segment.durations, segment.capacity, slots);
+                }
+                segment.pending++;
+            }
+            log.info("distance matrix store update, customers:{}", customers.size());
+            DistanceMatrix fetched = null;
+            try {
+                fetched = delegate.matrix(customers, required);
+            } finally {
+                synchronized (this) {
+                    segment.pending--;
+                    // 获取期间文件可能被其他请求扩容替换，写入最新的文件，坐标在扩容时都已复制
+                    while (segment.replacedBy != null) {
+                        segment = segment.replacedBy;
+                    }
+                    for (int i = 0; i < points.length; i++) {
+                        slots[i] = segment.slotOf(points[i]);
+                    }
+                    if (fetched != null) {
+                        segment.write(slots, fetched, required);
+                    }
+                }
+            }
+            return new MappedDistanceMatrix(segment.distances, segment.durations, segment.capacity, slots);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * 找到或创建包含全部请求坐标的文件，缺少的坐标追加到文件中
+     *
+     * @param slots 输出：每个请求坐标在文件中的槽位
+     */
+    private Segment reserve(long[] points, int[] slots) throws IOException {
+        Segment segment = find(points);
+        int missing = segment == null ? distinct(points) : segment.missing(points);
+        if (segment == null) {
+            segment = create(missing);
+        } else if (segment.count + missing > segment.capacity) {
+            segment = grow(segment, segment.count + missing);
+        }
+        long fingerprint = segment.fingerprint;
+        for (int i = 0; i < points.length; i++) {
+            int slot = segment.slotOf(points[i]);
+            slots[i] = slot >= 0 ? slot : segment.append(points[i]);
+        }
+        if (segment.fingerprint != fingerprint) {
+            log.info("distance matrix store append, points:{}, new points:{}", segment.count, missing);
+            rename(segment);
+        }
+        return segment;
+    }
+
+    /**
+     * 坐标集合的指纹，与顺序无关，追加坐标时可以增量计算
+     */
+    public static long fingerprint(long[] points) {
+        Set<Long> seen = new HashSet<>();
+        long fingerprint = 0;
+        for (long point : points) {
+            if (seen.add(point)) {
+                fingerprint += Coordinates.hash(point);
+            }
+        }
+        return fingerprint;
+    }
+
+    /**
+     * 优先按指纹直接打开文件，否则选择包含请求坐标最多的文件，包含的比例低于{@link #MIN_OVERLAP}时返回null。
+     * 比较时只读取各文件的坐标部分，只映射选中的文件
+     */
+    private Segment find(long[] points) throws IOException {
+        Path exact = directory.resolve(fileName(fingerprint(points)));
+        if (Files.exists(exact)) {
+            return open(exact);
+        }
+        Set<Long> requested = new HashSet<>();
+        for (long point : points) {
+            requested.add(point);
+        }
+        Path best = null;
+        int bestOverlap = (int) Math.ceil(requested.size() * MIN_OVERLAP) - 1;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + SUFFIX)) {
+            for (Path file : files) {
+                Segment segment = segments.get(file);
+                int overlap = segment != null ? requested.size() - segment.missing(points) : overlap(file, requested);
+                if (overlap > bestOverlap) {
+                    best = file;
+                    bestOverlap = overlap;
+                }
+            }
+        }
+        return best == null ? null : open(best);
+    }
+
+    /**
+     * 文件中有多少个请求的坐标，不映射文件
+     */
+    private static int overlap(Path file, Set<Long> requested) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            read(channel, header, 0);
+            if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION) {
+                return 0;
+            }
+            int count = header.getInt(12);
+            ByteBuffer buffer = ByteBuffer.allocate(count * Long.BYTES);
+            read(channel, buffer, HEADER_SIZE);
+            int overlap = 0;
+            for (int i = 0; i < count; i++) {
+                if (requested.contains(buffer.getLong(i * Long.BYTES))) {
+                    overlap++;
+                }
+            }
+            return overlap;
+        }
+    }
+
+    private static void read(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("矩阵文件不完整");
+            }
+        }
+    }
+
+    private Segment open(Path file) throws IOException {
+        Segment segment = segments.get(file);
+        if (segment == null) {
+            segment = new Segment(file, 0);
+            segments.put(file, segment);
+        }
+        return segment;
+    }
+
+    private Segment create(int count) throws IOException {
+        Path file = Files.createTempFile(directory, "matrix", ".tmp");
+        return new Segment(file, capacityFor(count));
+    }
+
+    /**
+     * 扩容：创建更大的文件并复制已有数据，旧文件删除
+     */
+    private Segment grow(Segment old, int count) throws IOException {
+        Path file = Files.createTempFile(directory, "matrix", ".tmp");
+        Segment segment = new Segment(file, capacityFor(count));
+        for (int i = 0; i < old.count; i++) {
+            segment.append(old.point(i));
+        }
+        for (int from = 0; from < old.count; from++) {
+            for (int to = 0; to < old.count; to++) {
+                segment.distances.put(from * segment.capacity + to, old.distances.get(from * old.capacity + to));
+                segment.durations.put(from * segment.capacity + to, old.durations.get(from * old.capacity + to));
+            }
+        }
+        segment.pending = old.pending;
+        old.replacedBy = segment;
+        segments.remove(old.file);
+        Files.deleteIfExists(old.file);
+        return rename(segment);
+    }
+
+    private Segment rename(Segment segment) throws IOException {
+        Path target = directory.resolve(fileName(segment.fingerprint));
+        if (!target.equals(segment.file)) {
+            segments.remove(segment.file);
+            Files.move(segment.file, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            segment.file = target;
+            segments.put(target, segment);
+        }
+        return segment;
+    }
+
+    private static int capacityFor(int count) {
+        int capacity = Math.max(MIN_CAPACITY, count + count / 2);
+        if (count > MAX_CAPACITY) {
+            throw new IllegalStateException("坐标数量超过存储上限: " + count);
+        }
+        return Math.min(capacity, MAX_CAPACITY);
+    }
+
+    private static int distinct(long[] points) {
+        Set<Long> seen = new HashSet<>();
+        for (long point : points) {
+            seen.add(point);
+        }
+        return seen.size();
+    }
+
+    private static String fileName(long fingerprint) {
+        return String.format("%016x", fingerprint) + SUFFIX;
+    }
+
+    /**
+     * 一个矩阵文件
+     */
+    private static class Segment {
+        private Path file;
+        private final int capacity;
+        private int count;
+        private long fingerprint;
+        private final MappedByteBuffer header;
+        private final LongBuffer points;
+        private final IntBuffer distances;
+        private final IntBuffer durations;
+        /**
+         * 坐标到槽位的索引
+         */
+        private final Map<Long, Integer> index = new HashMap<>();
+        /**
+         * 正在通过delegate获取距离、获取后要写回本文件的请求数
+         */
+        private int pending;
+        /**
+         * 扩容后替代本文件的新文件
+         */
+        private Segment replacedBy;
+
+        /**
+         * @param capacity 大于0时新建文件，否则打开已有文件
+         */
+        Segment(Path file, int capacity) throws IOException {
+            this.file = file;
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                if (capacity > 0) {
+                    channel.truncate(0);
+                    MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE);
+                    buffer.putInt(0, MAGIC);
+                    buffer.putInt(4, VERSION);
+                    buffer.putInt(8, capacity);
+                    buffer.putInt(12, 0);
+                    buffer.putLong(16, 0);
+                    this.header = buffer;
+                } else {
+                    this.header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE);
+                    if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION) {
+                        throw new IOException("无法识别的矩阵文件: " + file);
+                    }
+                    capacity = header.getInt(8);
+                }
+                this.capacity = capacity;
+                this.count = header.getInt(12);
+                this.fingerprint = header.getLong(16);
+                long pointsSize = (long) capacity * Long.BYTES;
+                long matrixSize = (long) capacity * capacity * Integer.BYTES;
+                this.points = channel.map(FileChannel.MapMode.READ_WRITE, HEADER_SIZE, pointsSize).asLongBuffer();
+                this.distances = channel.map(FileChannel.MapMode.READ_WRITE, HEADER_SIZE + pointsSize, matrixSize).asIntBuffer();
+                this.durations = channel.map(FileChannel.MapMode.READ_WRITE, HEADER_SIZE + pointsSize + matrixSize, matrixSize).asIntBuffer();
+            }
+            for (int i = 0; i < count; i++) {
+                index.putIfAbsent(point(i), i);
+            }
+        }
+
+        long point(int slot) {
+            return points.get(slot);
+        }
+
+        int slotOf(long point) {
+            Integer slot = index.get(point);
+            return slot == null ? -1 : slot;
+        }
+
+        int missing(long[] requested) {
+            Set<Long> absent = new HashSet<>();
+            for (long point : requested) {
+                if (!index.containsKey(point)) {
+                    absent.add(point);
+                }
+            }
+            return absent.size();
+        }
+
+        /**
+         * 追加一个坐标，新的行和列标记为未知
+         */
+        int append(long point) {
+            int slot = count;
+            points.put(slot, point);
+            for (int i = 0; i <= slot; i++) {
+                int value = i == slot ? 0 : UNKNOWN;
+                distances.put(slot * capacity + i, value);
+                distances.put(i * capacity + slot, value);
+                durations.put(slot * capacity + i, value);
+                durations.put(i * capacity + slot, value);
+            }
+            index.put(point, slot);
+            count++;
+            fingerprint += Coordinates.hash(point);
+            header.putInt(12, count);
+            header.putLong(16, fingerprint);
+            return slot;
+        }
+
+        /**
+         * 请求的坐标之间还没有距离的点对
+         *
+         * @return 下标为请求中的from*size+to，都已存在时返回null
+         */
+        boolean[] unknown(int[] slots) {
+            int size = slots.length;
+            boolean[] required = null;
+            for (int from = 0; from < size; from++) {
+                int row = slots[from] * capacity;
+                for (int to = 0; to < size; to++) {
+                    if (distances.get(row + slots[to]) == UNKNOWN) {
+                        if (required == null) {
+                            required = new boolean[size * size];
+                        }
+                        required[from * size + to] = true;
+                    }
+                }
+            }
+            return required;
+        }
+
+        /**
+         * 只写入请求的点对，不覆盖已有的距离
+         */
+        void write(int[] slots, DistanceMatrix matrix, boolean[] required) {
+            int size = slots.length;
+            for (int from = 0; from < size; from++) {
+                int row = slots[from] * capacity;
+                for (int to = 0; to < size; to++) {
+                    if (required[from * size + to]) {
+                        distances.put(row + slots[to], (int) Math.round(matrix.distance(from, to)));
+                        durations.put(row + slots[to], matrix.duration(from, to));
+                    }
+                }
+            }
+        }
+    }
+}
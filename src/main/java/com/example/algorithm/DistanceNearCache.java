@@ -0,0 +1,122 @@
+package com.example.algorithm;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 进程内距离缓存，位于redis之前。
+ * 按LRU淘汰，条目数量有上限且带过期时间，只保存解析后的距离和时长
+ */
+@Slf4j
+@Component
+public class DistanceNearCache {
+    private final int maxSize;
+    private final long ttlMillis;
+    private final Map<String, Entry> entries;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    public DistanceNearCache(@Value("${amap.near-cache.max-size:200000}") int maxSize,
+                             @Value("${amap.near-cache.ttl:6h}") Duration ttl) {
+        this.maxSize = maxSize;
+        this.ttlMillis = ttl.toMillis();
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                if (size() > DistanceNearCache.this.maxSize) {
+                    evictions.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * 读取缓存
+     *
+     * @param key 缓存key
+     * @return 命中返回条目，未命中或已过期返回null
+     */
+    public Entry get(String key) {
+        long now = System.currentTimeMillis();
+        synchronized (entries) {
+            Entry entry = entries.get(key);
+            if (entry != null && entry.expiresAt < now) {
+                entries.remove(key);
+                evictions.incrementAndGet();
+                entry = null;
+            }
+            if (entry == null) {
+                misses.incrementAndGet();
+            } else {
+                hits.incrementAndGet();
+            }
+            return entry;
+        }
+    }
+
+    public void put(String key, int distance, int duration) {
+        Entry entry = new Entry(distance, duration, System.currentTimeMillis() + ttlMillis);
+        synchronized (entries) {
+            entries.put(key, entry);
+        }
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    @Override
+    public String toString() {
+        return "size=" + size() + ", hits=" + getHits() + ", misses=" + getMisses() + ", evictions=" + getEvictions();
+    }
+
+    public static class Entry {
+        /**
+         * 路径距离，单位：米
+         */
+        private final int distance;
+        /**
+         * 预计行驶时间，单位：秒
+         */
+        private final int duration;
+        private final long expiresAt;
+
+        Entry(int distance, int duration, long expiresAt) {
+            this.distance = distance;
+            this.duration = duration;
+            this.expiresAt = expiresAt;
+        }
+
+        public int getDistance() {
+            return distance;
+        }
+
+        public int getDuration() {
+            return duration;
+        }
+    }
+}
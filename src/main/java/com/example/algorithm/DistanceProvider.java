@@ -0,0 +1,30 @@
+package com.example.algorithm;
+
+import com.example.model.UserVo;
+
+import java.util.List;
+
+/**
+ * 距离数据来源，求解器只依赖这个接口获取距离矩阵
+ */
+public interface DistanceProvider {
+    /**
+     * 计算仓库与所有客户两两之间的距离
+     *
+     * @param customers 客户列表，矩阵槽位i+1对应customers.get(i)
+     * @return 距离矩阵
+     */
+    DistanceMatrix matrix(List<UserVo> customers);
+
+    /**
+     * 只计算部分点对的距离，已经有其余距离的调用方(如{@link DistanceMatrixStore})用来避免重复请求。
+     * 默认计算完整矩阵，按点对请求的实现可以覆盖
+     *
+     * @param customers 客户列表，矩阵槽位i+1对应customers.get(i)
+     * @param required  需要的点对，下标为from*size+to，size为客户数量加1
+     * @return 距离矩阵，不需要的点对的值不确定
+     */
+    default DistanceMatrix matrix(List<UserVo> customers, boolean[] required) {
+        return matrix(customers);
+    }
+}
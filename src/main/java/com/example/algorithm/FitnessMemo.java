@@ -0,0 +1,91 @@
+package com.example.algorithm;
+
+/**
+ * 个体评估结果的缓存：开放寻址的long到double映射，容量固定。
+ * 键为染色体的64位哈希，种群收敛后大量子代与已有个体相同，命中时不再重复解码。
+ * 探测{@link #MAX_PROBES}个位置仍找不到空位时覆盖第一个位置上的旧记录。
+ * <p>
+ * 不是线程安全的，并行计算时每个线程使用自己的实例
+ */
+public class FitnessMemo {
+    /**
+     * 最多探测的位置数
+     */
+    private static final int MAX_PROBES = 8;
+    /**
+     * 空位置的键
+     */
+    private static final long EMPTY = 0;
+
+    private final long[] keys;
+    private final double[] values;
+    private final int mask;
+    private long hits;
+    private long misses;
+
+    /**
+     * @param capacity 容量，向上取整为2的幂
+     */
+    public FitnessMemo(int capacity) {
+        int size = Integer.highestOneBit(Math.max(MAX_PROBES, capacity - 1)) << 1;
+        this.keys = new long[size];
+        this.values = new double[size];
+        this.mask = size - 1;
+    }
+
+    /**
+     * 染色体的哈希，相同的排列哈希相同
+     */
+    public static long hash(int[] tour) {
+        long h = tour.length;
+        for (int slot : tour) {
+            h = h * 0x9E3779B97F4A7C15L + slot;
+        }
+        h = Coordinates.hash(h);
+        return h == EMPTY ? 1 : h;
+    }
+
+    /**
+     * 查找缓存的值
+     *
+     * @param key 染色体的哈希
+     * @return 缓存的值，不存在时返回NaN
+     */
+    public double get(long key) {
+        int index = (int) key & mask;
+        for (int probe = 0; probe < MAX_PROBES; probe++) {
+            long current = keys[(index + probe) & mask];
+            if (current == key) {
+                hits++;
+                return values[(index + probe) & mask];
+            }
+            if (current == EMPTY) {
+                break;
+            }
+        }
+        misses++;
+        return Double.NaN;
+    }
+
+    public void put(long key, double value) {
+        int index = (int) key & mask;
+        for (int probe = 0; probe < MAX_PROBES; probe++) {
+            int slot = (index + probe) & mask;
+            if (keys[slot] == EMPTY || keys[slot] == key) {
+                keys[slot] = key;
+                values[slot] = value;
+                return;
+            }
+        }
+        keys[index] = key;
+        values[index] = value;
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+}
@@ -0,0 +1,26 @@
+package com.example.algorithm;
+
+import com.example.model.UserVo;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 遗传算法，见{@link VehicleRoutingProblem}
+ */
+@Component
+public class GeneticSolver implements Solver {
+    public static final String NAME = "ga";
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public Map<String, Object> solve(List<UserVo> customers, DistanceProvider distanceProvider,
+                                     SolverOptions options, SolverControl<VehicleRoutingProblem.Route> control) {
+        return VehicleRoutingProblem.findBestRoute(customers, distanceProvider, options, control);
+    }
+}
@@ -0,0 +1,115 @@
+package com.example.algorithm;
+
+import cn.hutool.core.convert.Convert;
+import cn.hutool.core.util.StrUtil;
+import com.example.model.GeocodesResult;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * 地理编码结果缓存，按规范化后的地址保存。
+ * 无法解析的地址也会缓存(空值)，过期时间较短，避免反复请求
+ */
+@Component
+public class GeocodeCache {
+    private static final String PREFIX = "vrp:geocode:";
+    private static final String NEGATIVE = "";
+
+    private final StringRedisTemplate redisTemplate;
+    private final Duration ttl;
+    private final Duration negativeTtl;
+
+    public GeocodeCache(StringRedisTemplate redisTemplate,
+                        @Value("${amap.geocode-cache.ttl:90d}") Duration ttl,
+                        @Value("${amap.geocode-cache.negative-ttl:1d}") Duration negativeTtl) {
+        this.redisTemplate = redisTemplate;
+        this.ttl = ttl;
+        this.negativeTtl = negativeTtl;
+    }
+
+    /**
+     * 读取缓存
+     *
+     * @param address 地址
+     * @return 查询结果，区分未缓存和缓存了无法解析的地址
+     */
+    public Lookup lookup(String address) {
+        String value = redisTemplate.opsForValue().get(PREFIX + normalize(address));
+        if (value == null) {
+            return Lookup.MISS;
+        }
+        if (value.isEmpty()) {
+            return Lookup.NEGATIVE;
+        }
+        Gson gson = new GsonBuilder().create();
+        return new Lookup(true, gson.fromJson(value, GeocodesResult.class));
+    }
+
+    /**
+     * 写入缓存
+     *
+     * @param address 地址
+     * @param result  地理编码结果，为null时表示地址无法解析
+     */
+    public void put(String address, GeocodesResult result) {
+        String key = PREFIX + normalize(address);
+        if (result == null) {
+            redisTemplate.opsForValue().set(key, NEGATIVE, negativeTtl);
+        } else {
+            Gson gson = new GsonBuilder().create();
+            redisTemplate.opsForValue().set(key, gson.toJson(result), ttl);
+        }
+    }
+
+    /**
+     * 规范化地址：全角转半角，去掉空白，英文转小写
+     */
+    public static String normalize(String address) {
+        if (address == null) {
+            return "";
+        }
+        return StrUtil.cleanBlank(Convert.toDBC(address)).toLowerCase();
+    }
+
+    /**
+     * 缓存查询结果：命中、缓存了无法解析的地址、未缓存三种情况
+     */
+    public static class Lookup {
+        static final Lookup MISS = new Lookup(false, null);
+        static final Lookup NEGATIVE = new Lookup(true, null);
+
+        private final boolean cached;
+        private final GeocodesResult result;
+
+        private Lookup(boolean cached, GeocodesResult result) {
+            this.cached = cached;
+            this.result = result;
+        }
+
+        /**
+         * 是否有缓存，包括无法解析的地址
+         */
+        public boolean isCached() {
+            return cached;
+        }
+
+        /**
+         * 缓存的是无法解析的地址
+         */
+        public boolean isNegative() {
+            return cached && result == null;
+        }
+
+        /**
+         * 地理编码结果，未缓存或无法解析时为null
+         */
+        public GeocodesResult getResult() {
+            return result;
+        }
+    }
+}
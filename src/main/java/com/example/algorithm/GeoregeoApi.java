@@ -4,11 +4,11 @@ import com.example.model.DistanceResult;
 import com.example.model.GeocodesResult;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.util.LinkedMultiValueMap;
 import org.springframework.util.MultiValueMap;
@@ -16,6 +16,8 @@ import org.springframework.web.client.RestTemplate;
 import org.springframework.web.util.UriComponentsBuilder;
 
 import java.net.URI;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
 
 @Slf4j
 @Service
@@ -23,13 +25,44 @@ public class GeoregeoApi {
     @Autowired
     private RestTemplate restTemplate;
     @Autowired
-    private StringRedisTemplate redisTemplate;
+    private RedisDistanceCache redisCache;
+    @Autowired
+    private DistanceNearCache nearCache;
+    @Autowired
+    private GeocodeCache geocodeCache;
+    @Autowired
+    private AmapRequestExecutor requestExecutor;
+    @Autowired
+    private AmapScheduler scheduler;
 
     private static final String KEY = "c2a172e4dd2f5e9089e2ff2dbf663a59";
     //仓库坐标
-    private static final String ORIGIN = "106.623069,26.677932";
+    public static final String ORIGIN = "106.623069,26.677932";
+    /**
+     * 距离接口单次请求最多支持的起点数量
+     */
+    public static final int MAX_ORIGINS = 100;
 
+    private final SingleFlight<String, GeocodesResult> geocodeFlight = new SingleFlight<>();
+    private final SingleFlight<String, DistanceResult> distanceFlight = new SingleFlight<>();
+    private final SingleFlight<String, List<DistanceResult>> distancesFlight = new SingleFlight<>();
+
+    /**
+     * 地理编码，结果按规范化后的地址缓存，相同地址的并发请求只调用一次接口
+     */
     public GeocodesResult geocode(String address) {
+        return geocodeFlight.execute(GeocodeCache.normalize(address), () -> {
+            GeocodeCache.Lookup cached = geocodeCache.lookup(address);
+            if (cached.isCached()) {
+                return cached.getResult();
+            }
+            GeocodesResult result = requestGeocode(address);
+            geocodeCache.put(address, result);
+            return result;
+        });
+    }
+
+    private GeocodesResult requestGeocode(String address) {
         String url = "https://restapi.amap.com/v3/geocode/geo?";
         MultiValueMap<String, String> params = new LinkedMultiValueMap<>();
         params.add("key", KEY);
@@ -37,11 +70,12 @@ public class GeoregeoApi {
 
         UriComponentsBuilder builder = UriComponentsBuilder.fromHttpUrl(url);
         URI uri = builder.queryParams(params).build().toUri();
-        String result = restTemplate.getForObject(uri, String.class);
         Gson gson = new GsonBuilder().create();
-        JsonObject jsonObject = gson.fromJson(result, JsonObject.class);
+        // 接口调用失败(如超出配额)时抛出异常，不能当作地址无法解析
+        JsonObject jsonObject = scheduler.call(AmapScheduler.Endpoint.GEOCODE,
+                () -> gson.fromJson(restTemplate.getForObject(uri, String.class), JsonObject.class));
         log.info("geocode result:{}", jsonObject.toString());
-        if (jsonObject.get("status").getAsInt() == 1 && jsonObject.get("count").getAsInt() >= 1) {
+        if (jsonObject.get("count").getAsInt() >= 1) {
             String st = null;
             for (JsonElement geocodes : jsonObject.getAsJsonArray("geocodes")) {
                 if (geocodes.getAsJsonObject().get("province").getAsString().equals("贵州省")) {
@@ -56,6 +90,13 @@ public class GeoregeoApi {
         return null;
     }
 
+    /**
+     * 异步地理编码，与其他请求并发执行
+     */
+    public CompletableFuture<GeocodesResult> geocodeAsync(String address) {
+        return requestExecutor.submit(() -> geocode(address));
+    }
+
     public DistanceResult defaultDistance(String destination) {
         return distance(ORIGIN, destination);
     }
@@ -68,13 +109,216 @@ public class GeoregeoApi {
      * @return
      */
     public DistanceResult distance(String origins, String destination) {
-        String key = origins + "_" + destination;
+        long origin = Coordinates.pack(origins);
+        long target = Coordinates.pack(destination);
+        String key = cacheKey(origin, target);
+        DistanceNearCache.Entry entry = nearCache.get(key);
+        if (entry != null) {
+            return toResult(entry.getDistance(), entry.getDuration());
+        }
+        return distanceFlight.execute(key, () -> loadDistance(origins, destination, origin, target));
+    }
+
+    /**
+     * 从redis或高德接口获取距离
+     */
+    private DistanceResult loadDistance(String origins, String destination, long origin, long target) {
+        String key = cacheKey(origin, target);
+        long cached = redisCache.get(origin, target);
+        if (cached != DistanceCodec.MISSING) {
+            log.debug("distance result from redis:{}", key);
+            nearCache.put(key, DistanceCodec.distance(cached), DistanceCodec.duration(cached));
+            return toResult(DistanceCodec.distance(cached), DistanceCodec.duration(cached));
+        }
+        JsonArray results = requestDistance(origins, destination);
+        if (results != null && !results.isEmpty()) {
+            Gson gson = new GsonBuilder().create();
+            DistanceResult result = gson.fromJson(results.get(0), DistanceResult.class);
+            int distance = Integer.parseInt(result.getDistance());
+            int duration = Integer.parseInt(result.getDuration());
+            redisCache.put(origin, target, DistanceCodec.pack(distance, duration));
+            nearCache.put(key, distance, duration);
+            return result;
+        }
+        return null;
+    }
+
+    /**
+     * 批量计算多个起点到同一终点的距离，一次请求最多{@link #MAX_ORIGINS}个起点
+     *
+     * @param origins     起点列表
+     * @param destination 终点
+     * @return 与起点列表一一对应的距离，获取失败的位置为null
+     */
+    public List<DistanceResult> distances(List<String> origins, String destination) {
+        if (origins.size() > MAX_ORIGINS) {
+            throw new IllegalArgumentException("起点数量超过限制: " + origins.size());
+        }
+        List<DistanceResult> distances = new ArrayList<>(Collections.nCopies(origins.size(), null));
+        if (origins.isEmpty()) {
+            return distances;
+        }
+        String joined = String.join("|", origins);
+        return distancesFlight.execute(joined + "_" + destination, () -> requestDistances(joined, destination, distances));
+    }
+
+    private List<DistanceResult> requestDistances(String origins, String destination, List<DistanceResult> distances) {
+        JsonArray results = requestDistance(origins, destination);
+        if (results == null) {
+            return distances;
+        }
         Gson gson = new GsonBuilder().create();
-        String s = redisTemplate.opsForValue().get(key);
-        if (s != null) {
-            log.info("distance result from redis:{}", s);
-            return gson.fromJson(s, DistanceResult.class);
+        for (JsonElement element : results) {
+            DistanceResult result = gson.fromJson(element, DistanceResult.class);
+            if (result.getOrigin_id() == null || result.getDistance() == null) {
+                continue;
+            }
+            // origin_id从1开始
+            int index = Integer.parseInt(result.getOrigin_id()) - 1;
+            if (index >= 0 && index < distances.size()) {
+                distances.set(index, result);
+            }
         }
+        return distances;
+    }
+
+    /**
+     * 异步批量计算距离，与其他请求并发执行
+     */
+    public CompletableFuture<List<DistanceResult>> distancesAsync(List<String> origins, String destination) {
+        return requestExecutor.submit(() -> distances(origins, destination));
+    }
+
+    /**
+     * 批量读取坐标两两之间已缓存的距离，先读进程内缓存，未命中的按起点分组从redis读取
+     *
+     * @param points 坐标列表
+     * @return 行优先的矩阵，值参考{@link DistanceCodec}，未缓存的位置为{@link DistanceCodec#MISSING}
+     */
+    public long[] cachedMatrix(List<String> points) {
+        int size = points.size();
+        long[] packed = new long[size];
+        for (int i = 0; i < size; i++) {
+            packed[i] = Coordinates.pack(points.get(i));
+        }
+        long[] matrix = new long[size * size];
+        Map<Long, long[]> requests = new LinkedHashMap<>();
+        Map<Long, int[]> requestIndexes = new HashMap<>();
+        int[] missing = new int[size];
+        for (int from = 0; from < size; from++) {
+            int count = 0;
+            for (int to = 0; to < size; to++) {
+                if (packed[from] == packed[to]) {
+                    matrix[from * size + to] = DistanceCodec.pack(0, 0);
+                    continue;
+                }
+                DistanceNearCache.Entry entry = nearCache.get(cacheKey(packed[from], packed[to]));
+                if (entry != null) {
+                    matrix[from * size + to] = DistanceCodec.pack(entry.getDistance(), entry.getDuration());
+                } else {
+                    matrix[from * size + to] = DistanceCodec.MISSING;
+                    missing[count++] = to;
+                }
+            }
+            if (count > 0 && !requests.containsKey(packed[from])) {
+                int[] indexes = Arrays.copyOf(missing, count);
+                long[] destinations = new long[count];
+                for (int i = 0; i < count; i++) {
+                    destinations[i] = packed[indexes[i]];
+                }
+                requests.put(packed[from], destinations);
+                requestIndexes.put(packed[from], indexes);
+            }
+        }
+        Map<Long, long[]> rows = redisCache.get(requests);
+        for (int from = 0; from < size; from++) {
+            long[] values = rows.get(packed[from]);
+            if (values == null) {
+                continue;
+            }
+            int[] indexes = requestIndexes.get(packed[from]);
+            for (int i = 0; i < indexes.length; i++) {
+                if (values[i] != DistanceCodec.MISSING) {
+                    matrix[from * size + indexes[i]] = values[i];
+                    nearCache.put(cacheKey(packed[from], packed[indexes[i]]), DistanceCodec.distance(values[i]), DistanceCodec.duration(values[i]));
+                }
+            }
+        }
+        log.debug("distance near cache:{}", nearCache);
+        return matrix;
+    }
+
+    /**
+     * 一次性将新获取的距离写入缓存
+     *
+     * @param points  坐标列表
+     * @param fetched 行优先的矩阵，值参考{@link DistanceCodec}，为{@link DistanceCodec#MISSING}的位置不写入
+     */
+    public void cacheMatrix(List<String> points, long[] fetched) {
+        int size = points.size();
+        Map<Long, Map<Long, Long>> rows = new HashMap<>();
+        for (int from = 0; from < size; from++) {
+            long origin = Coordinates.pack(points.get(from));
+            for (int to = 0; to < size; to++) {
+                long value = fetched[from * size + to];
+                if (value == DistanceCodec.MISSING) {
+                    continue;
+                }
+                long destination = Coordinates.pack(points.get(to));
+                rows.computeIfAbsent(origin, k -> new HashMap<>()).put(destination, value);
+                nearCache.put(cacheKey(origin, destination), DistanceCodec.distance(value), DistanceCodec.duration(value));
+            }
+        }
+        redisCache.putAll(rows);
+    }
+
+    /**
+     * 将一组起点到同一终点的距离写入缓存
+     *
+     * @param origins     起点列表
+     * @param destination 终点
+     * @param results     与起点列表一一对应的距离，为null的位置不写入
+     */
+    public void cacheDistances(List<String> origins, String destination, List<DistanceResult> results) {
+        long target = Coordinates.pack(destination);
+        Map<Long, Map<Long, Long>> rows = new HashMap<>();
+        for (int i = 0; i < origins.size(); i++) {
+            DistanceResult result = results.get(i);
+            if (result == null) {
+                continue;
+            }
+            long origin = Coordinates.pack(origins.get(i));
+            int distance = Integer.parseInt(result.getDistance());
+            int duration = Integer.parseInt(result.getDuration());
+            rows.computeIfAbsent(origin, k -> new HashMap<>()).put(target, DistanceCodec.pack(distance, duration));
+            nearCache.put(cacheKey(origin, target), distance, duration);
+        }
+        redisCache.putAll(rows);
+    }
+
+    private static DistanceResult toResult(int distance, int duration) {
+        DistanceResult result = new DistanceResult();
+        result.setDistance(String.valueOf(distance));
+        result.setDuration(String.valueOf(duration));
+        return result;
+    }
+
+    /**
+     * 进程内缓存的key，使用规范化后的坐标
+     */
+    private static String cacheKey(long origin, long destination) {
+        return origin + "_" + destination;
+    }
+
+    /**
+     * 请求高德距离接口
+     *
+     * @param origins     起点，多个起点用"|"分隔
+     * @param destination 终点
+     * @return results数组，没有结果返回null
+     * @throws AmapException 接口返回失败状态
+     */
+    private JsonArray requestDistance(String origins, String destination) {
         String url = "https://restapi.amap.com/v3/distance";
         MultiValueMap<String, String> params = new LinkedMultiValueMap<>();
         params.add("key", KEY);
@@ -84,13 +328,12 @@ public class GeoregeoApi {
 
         UriComponentsBuilder builder = UriComponentsBuilder.fromHttpUrl(url);
         URI uri = builder.queryParams(params).build().toUri();
-        String result = restTemplate.getForObject(uri, String.class);
-        JsonObject jsonObject = gson.fromJson(result, JsonObject.class);
+        Gson gson = new GsonBuilder().create();
+        JsonObject jsonObject = scheduler.call(AmapScheduler.Endpoint.DISTANCE,
+                () -> gson.fromJson(restTemplate.getForObject(uri, String.class), JsonObject.class));
         log.info("distance result:{}", jsonObject.toString());
-        if (jsonObject.get("status").getAsInt() == 1 && jsonObject.get("count").getAsInt() >= 1) {
-            String st = jsonObject.getAsJsonArray("results").get(0).toString();
-            redisTemplate.opsForValue().set(key, st);
-            return gson.fromJson(st, DistanceResult.class);
+        if (jsonObject.get("count").getAsInt() >= 1) {
+            return jsonObject.getAsJsonArray("results");
         }
         return null;
     }
@@ -0,0 +1,110 @@
+package com.example.algorithm;
+
+import com.example.model.UserVo;
+
+import java.util.List;
+
+/**
+ * 离线距离估算，不依赖网络和redis。
+ * 按经纬度计算球面距离，再乘以绕行系数得到道路距离，按平均车速估算行驶时间
+ */
+public class HaversineDistanceProvider implements DistanceProvider {
+    /**
+     * 地球平均半径，单位：米
+     */
+    public static final double EARTH_RADIUS = 6371008.8;
+    /**
+     * 默认绕行系数，道路距离与直线距离之比
+     */
+    public static final double DEFAULT_DETOUR_FACTOR = 1.3;
+    /**
+     * 默认平均车速，单位：千米/小时
+     */
+    public static final double DEFAULT_SPEED = 30;
+
+    private final double detourFactor;
+    /**
+     * 平均车速，单位：米/秒
+     */
+    private final double metersPerSecond;
+
+    public HaversineDistanceProvider() {
+        this(DEFAULT_DETOUR_FACTOR, DEFAULT_SPEED);
+    }
+
+    /**
+     * @param detourFactor 绕行系数
+     * @param speed        平均车速，单位：千米/小时
+     */
+    public HaversineDistanceProvider(double detourFactor, double speed) {
+        if (detourFactor < 1 || speed <= 0) {
+            throw new IllegalArgumentException("绕行系数不能小于1，车速必须大于0");
+        }
+        this.detourFactor = detourFactor;
+        this.metersPerSecond = speed * 1000 / 3600;
+    }
+
+    @Override
+    public DistanceMatrix matrix(List<UserVo> customers) {
+        int size = customers.size() + 1;
+        double[] longitudes = new double[size];
+        double[] latitudes = new double[size];
+        String[] origin = GeoregeoApi.ORIGIN.split(",");
+        longitudes[DistanceMatrix.DEPOT] = Double.parseDouble(origin[0]);
+        latitudes[DistanceMatrix.DEPOT] = Double.parseDouble(origin[1]);
+        for (int i = 0; i < customers.size(); i++) {
+            longitudes[i + 1] = customers.get(i).getLongitude().doubleValue();
+            latitudes[i + 1] = customers.get(i).getLatitude().doubleValue();
+        }
+        double[] distances = new double[size * size];
+        int[] durations = new int[size * size];
+        fill(longitudes, latitudes, distances, durations);
+        return new DistanceMatrix(size, distances, durations);
+    }
+
+    /**
+     * 填充距离矩阵，坐标数组会被原地转换为弧度，内层循环只做数组读写、不分配对象
+     *
+     * @param longitudes 经度，单位：度
+     * @param latitudes  纬度，单位：度
+     * @param distances  输出，行优先的距离矩阵，单位：米
+     * @param durations  输出，行优先的时长矩阵，单位：秒
+     */
+    public void fill(double[] longitudes, double[] latitudes, double[] distances, int[] durations) {
+        int size = longitudes.length;
+        double[] cosLatitudes = new double[size];
+        for (int i = 0; i < size; i++) {
+            longitudes[i] = Math.toRadians(longitudes[i]);
+            latitudes[i] = Math.toRadians(latitudes[i]);
+            cosLatitudes[i] = Math.cos(latitudes[i]);
+        }
+        double scale = 2 * EARTH_RADIUS * detourFactor;
+        for (int from = 0; from < size; from++) {
+            int row = from * size;
+            double longitude = longitudes[from];
+            double latitude = latitudes[from];
+            double cosLatitude = cosLatitudes[from];
+            for (int to = 0; to < size; to++) {
+                double sinLatitude = Math.sin((latitudes[to] - latitude) * 0.5);
+                double sinLongitude = Math.sin((longitudes[to] - longitude) * 0.5);
+                double a = sinLatitude * sinLatitude + cosLatitude * cosLatitudes[to] * sinLongitude * sinLongitude;
+                double distance = scale * Math.asin(Math.sqrt(Math.min(1, a)));
+                distances[row + to] = distance;
+                durations[row + to] = (int) Math.round(distance / metersPerSecond);
+            }
+        }
+    }
+
+    /**
+     * 两点之间的球面距离(不含绕行系数)
+     *
+     * @return 单位：米
+     */
+    public static double haversine(double longitude1, double latitude1, double longitude2, double latitude2) {
+        double sinLatitude = Math.sin(Math.toRadians(latitude2 - latitude1) * 0.5);
+        double sinLongitude = Math.sin(Math.toRadians(longitude2 - longitude1) * 0.5);
+        double a = sinLatitude * sinLatitude
+                + Math.cos(Math.toRadians(latitude1)) * Math.cos(Math.toRadians(latitude2)) * sinLongitude * sinLongitude;
+        return 2 * EARTH_RADIUS * Math.asin(Math.sqrt(Math.min(1, a)));
+    }
+}
@@ -0,0 +1,126 @@
+package com.example.algorithm;
+
+import com.example.algorithm.VehicleRoutingProblem.Individual;
+import com.example.algorithm.VehicleRoutingProblem.Population;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * 岛屿模型：多个种群各用一个线程独立进化，变异率和锦标赛大小各不相同。
+ * 每隔{@link #MIGRATION_INTERVAL}代，各岛屿把自己的最优个体放入迁移环中属于自己的位置，
+ * 并从上一个岛屿的位置取出个体替换自己最差的个体；迁移环和全局最优解都只用原子引用交换，不加锁。
+ * <p>
+ * 迁移的时机取决于各线程的进度，因此岛屿模型的结果不能用种子复现
+ */
+@Slf4j
+class IslandModel {
+    /**
+     * 迁移间隔(代)
+     */
+    static final int MIGRATION_INTERVAL = 100;
+    /**
+     * 各岛屿的变异率，岛屿数量多于数组长度时循环使用
+     */
+    private static final double[] MUTATION_RATES = {0.05, 0.02, 0.1, 0.2};
+    /**
+     * 各岛屿的锦标赛大小
+     */
+    private static final int[] TOURNAMENT_SIZES = {5, 3, 7, 2};
+
+    private final Population[] islands;
+    /**
+     * 迁移环，第i个位置保存第i个岛屿最近一次迁出的个体
+     */
+    private final AtomicReferenceArray<Individual> ring;
+    /**
+     * 所有岛屿的最优解
+     */
+    private final AtomicReference<Individual> best = new AtomicReference<>();
+    private Function<Individual, Supplier<VehicleRoutingProblem.Route>> snapshot;
+    private SolverControl<VehicleRoutingProblem.Route> control;
+
+    IslandModel(VrpInstance instance, int count, int populationSize, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        islands = new Population[count];
+        for (int i = 0; i < count; i++) {
+            islands[i] = new Population(populationSize, instance, random.nextLong(), false,
+                    MUTATION_RATES[i % MUTATION_RATES.length], TOURNAMENT_SIZES[i % TOURNAMENT_SIZES.length]);
+        }
+        ring = new AtomicReferenceArray<>(count);
+    }
+
+    /**
+     * 所有岛屿并行进化，满足终止条件后返回。每个岛屿按自己的代数判断终止条件
+     *
+     * @param snapshot 把全局最优个体转换为结果的方法
+     * @param control  终止条件
+     */
+    void run(Function<Individual, Supplier<VehicleRoutingProblem.Route>> snapshot, SolverControl<VehicleRoutingProblem.Route> control) {
+        this.snapshot = snapshot;
+        this.control = control;
+        ExecutorService executor = Executors.newFixedThreadPool(islands.length);
+        try {
+            CompletableFuture<?>[] futures = new CompletableFuture<?>[islands.length];
+            for (int i = 0; i < islands.length; i++) {
+                int index = i;
+                futures[i] = CompletableFuture.runAsync(() -> evolve(index), executor);
+            }
+            CompletableFuture.allOf(futures).join();
+        } finally {
+            executor.shutdownNow();
+        }
+        log.info("island model finished, islands:{}, best cost:{}", islands.length, best.get().cost);
+    }
+
+    private void evolve(int index) {
+        Population island = islands[index];
+        island.initialize();
+        int generation = 0;
+        publish(generation, island.getFittest());
+        while (!control.isFinished(generation)) {
+            island.evolve();
+            generation++;
+            if (generation % MIGRATION_INTERVAL == 0) {
+                Individual fittest = island.getFittest();
+                ring.set(index, fittest.copy());
+                Individual migrant = ring.get((index + islands.length - 1) % islands.length);
+                if (migrant != null) {
+                    island.immigrate(migrant);
+                }
+            }
+            publish(generation, island.getFittest());
+        }
+    }
+
+    /**
+     * 比全局最优解更好时更新全局最优解
+     */
+    private void publish(int generation, Individual candidate) {
+        Individual current = best.get();
+        if (current != null && current.cost <= candidate.cost) {
+            return;
+        }
+        Individual copy = candidate.copy();
+        best.accumulateAndGet(copy, (a, b) -> a == null || b.cost < a.cost ? b : a);
+        control.update(generation, copy.cost, snapshot.apply(copy));
+    }
+
+    /**
+     * 当前的全局最优解，求解过程中也可以读取
+     */
+    Individual getBest() {
+        return best.get();
+    }
+
+    Population[] getIslands() {
+        return islands;
+    }
+}
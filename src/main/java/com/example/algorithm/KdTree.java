@@ -0,0 +1,255 @@
+package com.example.algorithm;
+
+/**
+ * 客户坐标的二维k-d树，用于k近邻、半径和矩形范围查询。
+ * 经纬度按等距圆柱投影换算为以参考点为原点的平面坐标(单位：米)，城市范围内误差可以忽略。
+ * <p>
+ * 树保存在数组中：points[from, to)的中位数为节点，左右两半为子树，按深度交替用x、y划分，
+ * 建树O(n·log n)，查询平均O(log n + 结果数量)。建好后不再修改，可以被多个线程同时查询
+ */
+public class KdTree {
+    private static final double METERS_PER_DEGREE = Math.PI / 180 * HaversineDistanceProvider.EARTH_RADIUS;
+
+    private final double originLongitude;
+    private final double originLatitude;
+    private final double scaleX;
+    /**
+     * 按树的结构排列的槽位
+     */
+    private final int[] points;
+    /**
+     * 与points对应的平面坐标
+     */
+    private final double[] xs;
+    private final double[] ys;
+
+    /**
+     * @param slots      要索引的槽位
+     * @param longitudes 经度，下标为槽位
+     * @param latitudes  纬度，下标为槽位
+     * @param originLongitude 投影原点的经度
+     * @param originLatitude  投影原点的纬度
+     */
+    public KdTree(int[] slots, double[] longitudes, double[] latitudes, double originLongitude, double originLatitude) {
+        this.originLongitude = originLongitude;
+        this.originLatitude = originLatitude;
+        this.scaleX = METERS_PER_DEGREE * Math.cos(Math.toRadians(originLatitude));
+        int n = slots.length;
+        this.points = slots.clone();
+        this.xs = new double[n];
+        this.ys = new double[n];
+        for (int i = 0; i < n; i++) {
+            xs[i] = x(longitudes[points[i]]);
+            ys[i] = y(latitudes[points[i]]);
+        }
+        build(0, n, 0);
+    }
+
+    /**
+     * 索引全部客户(槽位1..n)，以仓库为投影原点。客户坐标即{@code UserMapper.ownerLocation}查出的经纬度
+     */
+    public static KdTree of(VrpInstance instance) {
+        int n = instance.getCustomers();
+        double[] longitudes = new double[n + 1];
+        double[] latitudes = new double[n + 1];
+        int[] slots = new int[n];
+        for (int c = 0; c <= n; c++) {
+            longitudes[c] = instance.longitude(c);
+            latitudes[c] = instance.latitude(c);
+            if (c > 0) {
+                slots[c - 1] = c;
+            }
+        }
+        return new KdTree(slots, longitudes, latitudes, longitudes[DistanceMatrix.DEPOT], latitudes[DistanceMatrix.DEPOT]);
+    }
+
+    public int size() {
+        return points.length;
+    }
+
+    /**
+     * 离给定位置最近的k个点，按距离从近到远
+     *
+     * @param excluded  为true的槽位不参与查询，可以为null
+     * @param result    输出：槽位，长度至少为k
+     * @param distances 输出：平面距离的平方，长度至少为k
+     * @return 找到的点数
+     */
+    public int nearest(double longitude, double latitude, int k, boolean[] excluded, int[] result, double[] distances) {
+        if (k <= 0) {
+            return 0;
+        }
+        return nearest(0, points.length, 0, x(longitude), y(latitude), k, excluded, result, distances, 0);
+    }
+
+    private int nearest(int from, int to, int depth, double x, double y, int k, boolean[] excluded,
+                        int[] result, double[] distances, int count) {
+        if (from >= to) {
+            return count;
+        }
+        int mid = (from + to) >>> 1;
+        int slot = points[mid];
+        if (excluded == null || !excluded[slot]) {
+            double dx = xs[mid] - x;
+            double dy = ys[mid] - y;
+            double d = dx * dx + dy * dy;
+            if (count < k || d < distances[count - 1]) {
+                // 插入排序，保留最近的k个
+                int i = count < k ? count++ : count - 1;
+                while (i > 0 && distances[i - 1] > d) {
+                    distances[i] = distances[i - 1];
+                    result[i] = result[i - 1];
+                    i--;
+                }
+                distances[i] = d;
+                result[i] = slot;
+            }
+        }
+        double diff = depth % 2 == 0 ? x - xs[mid] : y - ys[mid];
+        // 先搜索查询点所在的一侧，另一侧只在可能有更近的点时搜索
+        if (diff < 0) {
+            count = nearest(from, mid, depth + 1, x, y, k, excluded, result, distances, count);
+            if (count < k || diff * diff < distances[count - 1]) {
+                count = nearest(mid + 1, to, depth + 1, x, y, k, excluded, result, distances, count);
+            }
+        } else {
+            count = nearest(mid + 1, to, depth + 1, x, y, k, excluded, result, distances, count);
+            if (count < k || diff * diff < distances[count - 1]) {
+                count = nearest(from, mid, depth + 1, x, y, k, excluded, result, distances, count);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 与给定位置的平面距离不超过radius的点，不排序
+     *
+     * @param radius 半径，单位：米
+     * @param result 输出：槽位，长度至少为{@link #size()}
+     * @return 找到的点数
+     */
+    public int withinRadius(double longitude, double latitude, double radius, int[] result) {
+        return withinRadius(0, points.length, 0, x(longitude), y(latitude), radius * radius, result, 0);
+    }
+
+    private int withinRadius(int from, int to, int depth, double x, double y, double radius2, int[] result, int count) {
+        if (from >= to) {
+            return count;
+        }
+        int mid = (from + to) >>> 1;
+        double dx = xs[mid] - x;
+        double dy = ys[mid] - y;
+        if (dx * dx + dy * dy <= radius2) {
+            result[count++] = points[mid];
+        }
+        double diff = depth % 2 == 0 ? x - xs[mid] : y - ys[mid];
+        if (diff < 0 || diff * diff <= radius2) {
+            count = withinRadius(from, mid, depth + 1, x, y, radius2, result, count);
+        }
+        if (diff >= 0 || diff * diff <= radius2) {
+            count = withinRadius(mid + 1, to, depth + 1, x, y, radius2, result, count);
+        }
+        return count;
+    }
+
+    /**
+     * 经纬度矩形范围内的点，不排序
+     *
+     * @param result 输出：槽位，长度至少为{@link #size()}
+     * @return 找到的点数
+     */
+    public int withinBox(double minLongitude, double minLatitude, double maxLongitude, double maxLatitude, int[] result) {
+        return withinBox(0, points.length, 0, x(minLongitude), y(minLatitude), x(maxLongitude), y(maxLatitude), result, 0);
+    }
+
+    private int withinBox(int from, int to, int depth, double minX, double minY, double maxX, double maxY,
+                          int[] result, int count) {
+        if (from >= to) {
+            return count;
+        }
+        int mid = (from + to) >>> 1;
+        double x = xs[mid];
+        double y = ys[mid];
+        if (x >= minX && x <= maxX && y >= minY && y <= maxY) {
+            result[count++] = points[mid];
+        }
+        double value = depth % 2 == 0 ? x : y;
+        if ((depth % 2 == 0 ? minX : minY) <= value) {
+            count = withinBox(from, mid, depth + 1, minX, minY, maxX, maxY, result, count);
+        }
+        if ((depth % 2 == 0 ? maxX : maxY) >= value) {
+            count = withinBox(mid + 1, to, depth + 1, minX, minY, maxX, maxY, result, count);
+        }
+        return count;
+    }
+
+    /**
+     * 投影后的平面坐标x，单位：米
+     */
+    public double x(double longitude) {
+        return (longitude - originLongitude) * scaleX;
+    }
+
+    /**
+     * 投影后的平面坐标y，单位：米
+     */
+    public double y(double latitude) {
+        return (latitude - originLatitude) * METERS_PER_DEGREE;
+    }
+
+    /**
+     * 把[from, to)按当前维度的中位数划分，再递归划分两半
+     */
+    private void build(int from, int to, int depth) {
+        while (to - from > 1) {
+            int mid = (from + to) >>> 1;
+            select(from, to, mid, depth % 2 == 0 ? xs : ys);
+            build(from, mid, depth + 1);
+            from = mid + 1;
+            depth++;
+        }
+    }
+
+    /**
+     * 快速选择：把第k小的元素放到位置k，左边都不大于它，右边都不小于它
+     */
+    private void select(int from, int to, int k, double[] keys) {
+        int lo = from;
+        int hi = to - 1;
+        while (lo < hi) {
+            double pivot = keys[(lo + hi) >>> 1];
+            int i = lo;
+            int j = hi;
+            while (i <= j) {
+                while (keys[i] < pivot) {
+                    i++;
+                }
+                while (keys[j] > pivot) {
+                    j--;
+                }
+                if (i <= j) {
+                    swap(i++, j--);
+                }
+            }
+            if (k <= j) {
+                hi = j;
+            } else if (k >= i) {
+                lo = i;
+            } else {
+                return;
+            }
+        }
+    }
+
+    private void swap(int i, int j) {
+        int point = points[i];
+        points[i] = points[j];
+        points[j] = point;
+        double x = xs[i];
+        xs[i] = xs[j];
+        xs[j] = x;
+        double y = ys[i];
+        ys[i] = ys[j];
+        ys[j] = y;
+    }
+}
@@ -0,0 +1,492 @@
+package com.example.algorithm;
+
+import java.util.Arrays;
+
+/**
+ * 子代的局部搜索：路线内2-opt、or-opt(移动1到3个连续客户，可跨路线)以及跨路线交换两个客户。
+ * 只尝试让客户与距离最近的k个客户相邻的操作，并使用don't-look标记跳过最近没有改进的客户，
+ * 每轮扫描接近线性。采用首次改进策略，操作后的载重和时长必须满足限制
+ * (本来就超时的单客户线路只要求时长不增加)。
+ * <p>
+ * 路线保存为带仓库哨兵节点的双向循环链表：客户节点编号即槽位1..n，第r条线路的仓库哨兵编号为n+1+r。
+ * 内部数组在多次搜索之间复用，实例不是线程安全的
+ */
+public class LocalSearch {
+    /**
+     * 默认的近邻数量
+     */
+    public static final int DEFAULT_NEIGHBORS = 10;
+    /**
+     * 按坐标取近邻时，先按直线距离取k的几倍个候选，再按距离矩阵筛选
+     */
+    private static final int CANDIDATE_FACTOR = 2;
+    /**
+     * 小于该值的改进视为没有改进，避免浮点误差导致死循环
+     */
+    private static final double EPSILON = 1e-6;
+    /**
+     * 操作类型，下标对应{@link #moves}
+     */
+    static final int OR_OPT = 0;
+    static final int EXCHANGE = 1;
+    static final int TWO_OPT = 2;
+
+    private final VrpInstance instance;
+    private final int n;
+    /**
+     * 每个客户最近的k个客户
+     */
+    private final int[][] neighbors;
+    private final int[] next;
+    private final int[] prev;
+    private final int[] routeOf;
+    private final int[] position;
+    private final int[] loads;
+    private final long[] durations;
+    private final boolean[] dontLook;
+    private final int[] buffer;
+    private int routes;
+    /**
+     * 最近一次搜索中各类操作的执行次数
+     */
+    final int[] moves = new int[3];
+    /**
+     * 最近一次搜索中执行的操作的变化量之和，应等于总距离的变化
+     */
+    double gain;
+
+    public LocalSearch(VrpInstance instance, int k) {
+        this(instance, nearestNeighbors(instance, k));
+    }
+
+    public LocalSearch(VrpInstance instance, int[][] neighbors) {
+        this.instance = instance;
+        this.n = instance.getCustomers();
+        this.neighbors = neighbors;
+        int nodes = 2 * n + 1;
+        this.next = new int[nodes];
+        this.prev = new int[nodes];
+        this.routeOf = new int[nodes];
+        this.position = new int[nodes];
+        this.loads = new int[n];
+        this.durations = new long[n];
+        this.dontLook = new boolean[n + 1];
+        this.buffer = new int[n];
+    }
+
+    /**
+     * 按距离矩阵计算每个客户(槽位1..size-1)最近的k个客户，距离取两个方向之和
+     *
+     * @return 下标为客户槽位，下标0不使用
+     */
+    public static int[][] nearestNeighbors(DistanceMatrix matrix, int k) {
+        int n = matrix.getSize() - 1;
+        int size = Math.min(k, n - 1);
+        int[][] neighbors = new int[n + 1][];
+        neighbors[0] = new int[0];
+        double[] best = new double[Math.max(size, 0)];
+        for (int c = 1; c <= n; c++) {
+            int[] list = new int[Math.max(size, 0)];
+            int count = 0;
+            for (int o = 1; o <= n && size > 0; o++) {
+                if (o == c) {
+                    continue;
+                }
+                double d = matrix.distance(c, o) + matrix.distance(o, c);
+                if (count == size && d >= best[count - 1]) {
+                    continue;
+                }
+                // 插入排序，保留最近的size个
+                int i = count < size ? count++ : count - 1;
+                while (i > 0 && best[i - 1] > d) {
+                    best[i] = best[i - 1];
+                    list[i] = list[i - 1];
+                    i--;
+                }
+                best[i] = d;
+                list[i] = o;
+            }
+            neighbors[c] = list;
+        }
+        return neighbors;
+    }
+
+    /**
+     * 计算每个客户最近的k个客户：用客户坐标的{@link KdTree}按直线距离取{@link #CANDIDATE_FACTOR}·k个候选，
+     * 再按距离矩阵(两个方向之和)保留最近的k个，复杂度O(n·k·log n)。
+     * 道路距离与直线距离差别很大时可能漏掉个别近邻；客户不多、候选已经覆盖全部客户时直接按距离矩阵计算
+     *
+     * @return 下标为客户槽位，下标0不使用
+     */
+    public static int[][] nearestNeighbors(VrpInstance instance, int k) {
+        int n = instance.getCustomers();
+        int size = Math.max(Math.min(k, n - 1), 0);
+        int candidates = CANDIDATE_FACTOR * size;
+        if (candidates >= n - 1) {
+            return nearestNeighbors(instance.getMatrix(), k);
+        }
+        KdTree tree = KdTree.of(instance);
+        int[][] neighbors = new int[n + 1][];
+        neighbors[0] = new int[0];
+        boolean[] excluded = new boolean[n + 1];
+        int[] found = new int[candidates];
+        double[] squares = new double[candidates];
+        double[] best = new double[size];
+        for (int c = 1; c <= n; c++) {
+            excluded[c] = true;
+            int count = tree.nearest(instance.longitude(c), instance.latitude(c), candidates, excluded, found, squares);
+            excluded[c] = false;
+            int[] list = new int[size];
+            int kept = 0;
+            for (int f = 0; f < count; f++) {
+                int o = found[f];
+                double d = instance.distance(c, o) + instance.distance(o, c);
+                if (kept == size && d >= best[kept - 1]) {
+                    continue;
+                }
+                int i = kept < size ? kept++ : kept - 1;
+                while (i > 0 && best[i - 1] > d) {
+                    best[i] = best[i - 1];
+                    list[i] = list[i - 1];
+                    i--;
+                }
+                best[i] = d;
+                list[i] = o;
+            }
+            neighbors[c] = list;
+        }
+        return neighbors;
+    }
+
+    /**
+     * 改进一个解，结果写回tour，车辆划分需要调用方重新切分
+     *
+     * @param tour       客户槽位的排列
+     * @param starts     每条线路在tour中的起始位置
+     * @param routeCount 线路数
+     */
+    public void improve(int[] tour, int[] starts, int routeCount) {
+        load(tour, starts, routeCount);
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int u = 1; u <= n; u++) {
+                if (dontLook[u]) {
+                    continue;
+                }
+                if (improveCustomer(u)) {
+                    changed = true;
+                } else {
+                    dontLook[u] = true;
+                }
+            }
+        }
+        store(tour);
+    }
+
+    private void load(int[] tour, int[] starts, int routeCount) {
+        routes = routeCount;
+        for (int r = 0; r < routeCount; r++) {
+            int depot = depot(r);
+            int last = depot;
+            int load = 0;
+            long duration = 0;
+            for (int i = starts[r]; i < starts[r + 1]; i++) {
+                int c = tour[i];
+                link(last, c);
+                routeOf[c] = r;
+                load += instance.demand(c);
+                duration += t(last, c);
+                last = c;
+            }
+            link(last, depot);
+            duration += t(last, depot);
+            routeOf[depot] = r;
+            loads[r] = load;
+            durations[r] = duration;
+            renumber(r);
+        }
+        for (int c = 1; c <= n; c++) {
+            dontLook[c] = false;
+        }
+        Arrays.fill(moves, 0);
+        gain = 0;
+    }
+
+    private void store(int[] tour) {
+        int index = 0;
+        for (int r = 0; r < routes; r++) {
+            int depot = depot(r);
+            for (int c = next[depot]; c != depot; c = next[c]) {
+                tour[index++] = c;
+            }
+        }
+    }
+
+    /**
+     * 对客户u尝试所有近邻操作，执行第一个改进的操作
+     */
+    private boolean improveCustomer(int u) {
+        for (int v : neighbors[u]) {
+            // 把u移到v之后或之前
+            if (tryOrOpt(u, 1, v) || tryOrOpt(u, 1, prev[v])) {
+                return true;
+            }
+            // 把从u开始的2到3个客户移到v之后
+            if (tryOrOpt(u, 2, v) || tryOrOpt(u, 3, v)) {
+                return true;
+            }
+            if (tryExchange(u, v)) {
+                return true;
+            }
+            if (routeOf[u] == routeOf[v] && tryTwoOpt(u, v)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 把从u开始的length个客户(同一条线路内连续)移到after之后
+     */
+    private boolean tryOrOpt(int u, int length, int after) {
+        int last = u;
+        for (int i = 1; i < length; i++) {
+            last = next[last];
+            if (isDepot(last)) {
+                return false;
+            }
+        }
+        int before = prev[u];
+        int following = next[last];
+        if (after == before || after == u) {
+            return false;
+        }
+        int segmentLoad = 0;
+        long segmentDuration = 0;
+        for (int c = u; ; c = next[c]) {
+            if (c == after) {
+                return false;
+            }
+            segmentLoad += instance.demand(c);
+            if (c == last) {
+                break;
+            }
+            segmentDuration += t(c, next[c]);
+        }
+        int afterNext = next[after];
+        double delta = d(before, following) - d(before, u) - d(last, following)
+                + d(after, u) + d(last, afterNext) - d(after, afterNext);
+        if (delta > -EPSILON) {
+            return false;
+        }
+        long removed = t(before, following) - t(before, u) - t(last, following);
+        long inserted = t(after, u) + t(last, afterNext) - t(after, afterNext);
+        int from = routeOf[u];
+        int to = routeOf[after];
+        if (from == to) {
+            if (!feasible(from, loads[from], durations[from] + removed + inserted)) {
+                return false;
+            }
+            durations[from] += removed + inserted;
+        } else {
+            if (!feasible(to, loads[to] + segmentLoad, durations[to] + inserted + segmentDuration)
+                    || !feasible(from, loads[from] - segmentLoad, durations[from] + removed - segmentDuration)) {
+                return false;
+            }
+            loads[from] -= segmentLoad;
+            loads[to] += segmentLoad;
+            durations[from] += removed - segmentDuration;
+            durations[to] += inserted + segmentDuration;
+        }
+        move(u, last, after);
+        renumber(from);
+        if (to != from) {
+            renumber(to);
+        }
+        touch(before, following, after, afterNext, u, last);
+        record(OR_OPT, delta);
+        return true;
+    }
+
+    /**
+     * 交换两个客户的位置
+     */
+    private boolean tryExchange(int u, int v) {
+        if (next[u] == v || next[v] == u) {
+            // 相邻的交换等同于移动一个客户，由or-opt处理
+            return false;
+        }
+        int pu = prev[u];
+        int nu = next[u];
+        int pv = prev[v];
+        int nv = next[v];
+        double delta = d(pu, v) + d(v, nu) + d(pv, u) + d(u, nv)
+                - d(pu, u) - d(u, nu) - d(pv, v) - d(v, nv);
+        if (delta > -EPSILON) {
+            return false;
+        }
+        long aroundU = t(pu, v) + t(v, nu) - t(pu, u) - t(u, nu);
+        long aroundV = t(pv, u) + t(u, nv) - t(pv, v) - t(v, nv);
+        int ru = routeOf[u];
+        int rv = routeOf[v];
+        int demandDelta = instance.demand(v) - instance.demand(u);
+        if (ru == rv) {
+            if (!feasible(ru, loads[ru], durations[ru] + aroundU + aroundV)) {
+                return false;
+            }
+            durations[ru] += aroundU + aroundV;
+        } else {
+            if (!feasible(ru, loads[ru] + demandDelta, durations[ru] + aroundU)
+                    || !feasible(rv, loads[rv] - demandDelta, durations[rv] + aroundV)) {
+                return false;
+            }
+            loads[ru] += demandDelta;
+            loads[rv] -= demandDelta;
+            durations[ru] += aroundU;
+            durations[rv] += aroundV;
+        }
+        move(u, u, v);
+        move(v, v, pu);
+        renumber(ru);
+        if (rv != ru) {
+            renumber(rv);
+        }
+        touch(pu, nu, pv, nv, u, v);
+        record(EXCHANGE, delta);
+        return true;
+    }
+
+    /**
+     * 路线内2-opt：反转两个客户之间的一段，使前一个客户与后一个客户相邻。
+     * 距离不对称，反转段内的边按实际方向重新计算
+     */
+    private boolean tryTwoOpt(int u, int v) {
+        int a = position[u] < position[v] ? u : v;
+        int b = a == u ? v : u;
+        int first = next[a];
+        if (first == b) {
+            return false;
+        }
+        int after = next[b];
+        double delta = d(a, b) + d(first, after) - d(a, first) - d(b, after);
+        long duration = t(a, b) + t(first, after) - t(a, first) - t(b, after);
+        for (int c = first; c != b; c = next[c]) {
+            delta += d(next[c], c) - d(c, next[c]);
+            duration += t(next[c], c) - t(c, next[c]);
+        }
+        if (delta > -EPSILON) {
+            return false;
+        }
+        int r = routeOf[u];
+        if (!feasible(r, loads[r], durations[r] + duration)) {
+            return false;
+        }
+        durations[r] += duration;
+        reverse(first, b);
+        renumber(r);
+        touch(a, b, first, after, u, v);
+        record(TWO_OPT, delta);
+        return true;
+    }
+
+    private void record(int type, double delta) {
+        moves[type]++;
+        gain += delta;
+    }
+
+    private boolean feasible(int route, int load, long duration) {
+        return load <= instance.getCapacity()
+                && (duration <= instance.getMaxDuration() || duration <= durations[route]);
+    }
+
+    /**
+     * 把first到last的一段移到after之后
+     */
+    private void move(int first, int last, int after) {
+        link(prev[first], next[last]);
+        int afterNext = next[after];
+        link(after, first);
+        link(last, afterNext);
+        int r = routeOf[after];
+        for (int c = first; ; c = next[c]) {
+            routeOf[c] = r;
+            if (c == last) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * 反转first到last的一段
+     */
+    private void reverse(int first, int last) {
+        int before = prev[first];
+        int after = next[last];
+        int count = 0;
+        for (int c = first; ; c = next[c]) {
+            buffer[count++] = c;
+            if (c == last) {
+                break;
+            }
+        }
+        int current = before;
+        for (int i = count - 1; i >= 0; i--) {
+            link(current, buffer[i]);
+            current = buffer[i];
+        }
+        link(current, after);
+    }
+
+    private void renumber(int r) {
+        int depot = depot(r);
+        int index = 0;
+        position[depot] = 0;
+        for (int c = next[depot]; c != depot; c = next[c]) {
+            position[c] = ++index;
+        }
+    }
+
+    /**
+     * 清除操作涉及的客户的don't-look标记。不用可变参数，避免每次操作分配数组
+     */
+    private void touch(int a, int b, int c, int d, int e, int f) {
+        touch(a);
+        touch(b);
+        touch(c);
+        touch(d);
+        touch(e);
+        touch(f);
+    }
+
+    private void touch(int node) {
+        if (!isDepot(node)) {
+            dontLook[node] = false;
+        }
+    }
+
+    private void link(int from, int to) {
+        next[from] = to;
+        prev[to] = from;
+    }
+
+    private int depot(int r) {
+        return n + 1 + r;
+    }
+
+    private boolean isDepot(int node) {
+        return node > n;
+    }
+
+    private int slot(int node) {
+        return node > n ? DistanceMatrix.DEPOT : node;
+    }
+
+    private double d(int from, int to) {
+        return instance.distance(slot(from), slot(to));
+    }
+
+    private long t(int from, int to) {
+        return instance.duration(slot(from), slot(to));
+    }
+}
@@ -0,0 +1,32 @@
+package com.example.algorithm;
+
+import java.nio.IntBuffer;
+
+/**
+ * 直接读取内存映射文件的距离矩阵，数据不复制到堆内。
+ * 本矩阵的槽位通过slots映射到文件中的槽位
+ */
+public class MappedDistanceMatrix extends DistanceMatrix {
+    private final IntBuffer distances;
+    private final IntBuffer durations;
+    private final int capacity;
+    private final int[] slots;
+
+    MappedDistanceMatrix(IntBuffer distances, IntBuffer durations, int capacity, int[] slots) {
+        super(slots.length);
+        this.distances = distances;
+        this.durations = durations;
+        this.capacity = capacity;
+        this.slots = slots;
+    }
+
+    @Override
+    public double distance(int from, int to) {
+        return distances.get(slots[from] * capacity + slots[to]);
+    }
+
+    @Override
+    public int duration(int from, int to) {
+        return durations.get(slots[from] * capacity + slots[to]);
+    }
+}
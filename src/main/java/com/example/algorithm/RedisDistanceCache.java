@@ -0,0 +1,124 @@
+package com.example.algorithm;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.*;
+
+/**
+ * redis中的距离缓存。
+ * 每个起点一个hash，field为终点坐标(8字节)，value为距离和时长(8字节)，
+ * 整个hash带过期时间，写入时续期，配合redis的volatile-lru策略控制内存占用
+ */
+@Component
+public class RedisDistanceCache {
+    private static final String PREFIX = "vrp:distance:";
+
+    private final StringRedisTemplate redisTemplate;
+    private final long ttlSeconds;
+
+    public RedisDistanceCache(StringRedisTemplate redisTemplate,
+                              @Value("${amap.redis.ttl:30d}") Duration ttl) {
+        this.redisTemplate = redisTemplate;
+        this.ttlSeconds = ttl.getSeconds();
+    }
+
+    /**
+     * 读取一对坐标的距离
+     *
+     * @return 编码后的距离，参考{@link DistanceCodec}，不存在时返回{@link DistanceCodec#MISSING}
+     */
+    public long get(long origin, long destination) {
+        byte[] value = redisTemplate.execute((RedisCallback<byte[]>) connection ->
+                connection.hashCommands().hGet(key(origin), DistanceCodec.encode(destination)));
+        return DistanceCodec.decode(value);
+    }
+
+    /**
+     * 读取起点整行的距离
+     *
+     * @return 终点到编码后距离的映射
+     */
+    public Map<Long, Long> row(long origin) {
+        Map<byte[], byte[]> entries = redisTemplate.execute((RedisCallback<Map<byte[], byte[]>>) connection ->
+                connection.hashCommands().hGetAll(key(origin)));
+        Map<Long, Long> row = new HashMap<>();
+        if (entries != null) {
+            entries.forEach((field, value) -> row.put(DistanceCodec.decode(field), DistanceCodec.decode(value)));
+        }
+        return row;
+    }
+
+    /**
+     * 以流水线方式批量读取多个起点到各自终点的距离，每个起点一次HMGET
+     *
+     * @param requests 起点到终点列表的映射
+     * @return 与请求顺序一致的结果，缺失的位置为{@link DistanceCodec#MISSING}
+     */
+    public Map<Long, long[]> get(Map<Long, long[]> requests) {
+        Map<Long, long[]> results = new LinkedHashMap<>();
+        if (requests.isEmpty()) {
+            return results;
+        }
+        List<Long> origins = new ArrayList<>(requests.keySet());
+        List<Object> replies = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (Long origin : origins) {
+                long[] destinations = requests.get(origin);
+                byte[][] fields = new byte[destinations.length][];
+                for (int i = 0; i < destinations.length; i++) {
+                    fields[i] = DistanceCodec.encode(destinations[i]);
+                }
+                connection.hashCommands().hMGet(key(origin), fields);
+            }
+            return null;
+        }, RedisSerializer.byteArray());
+        for (int i = 0; i < origins.size(); i++) {
+            long[] values = new long[requests.get(origins.get(i)).length];
+            Arrays.fill(values, DistanceCodec.MISSING);
+            if (replies.get(i) instanceof List<?> reply) {
+                for (int j = 0; j < values.length && j < reply.size(); j++) {
+                    values[j] = DistanceCodec.decode((byte[]) reply.get(j));
+                }
+            }
+            results.put(origins.get(i), values);
+        }
+        return results;
+    }
+
+    public void put(long origin, long destination, long value) {
+        putAll(Map.of(origin, Map.of(destination, value)));
+    }
+
+    /**
+     * 以流水线方式批量写入，每个起点一次HSET并续期
+     *
+     * @param rows 起点到(终点到编码后距离)的映射
+     */
+    public void putAll(Map<Long, Map<Long, Long>> rows) {
+        if (rows.isEmpty()) {
+            return;
+        }
+        redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            rows.forEach((origin, row) -> write(connection, origin, row));
+            return null;
+        });
+    }
+
+    private void write(RedisConnection connection, long origin, Map<Long, Long> row) {
+        Map<byte[], byte[]> fields = new HashMap<>(row.size() * 2);
+        row.forEach((destination, value) -> fields.put(DistanceCodec.encode(destination), DistanceCodec.encode(value)));
+        byte[] key = key(origin);
+        connection.hashCommands().hMSet(key, fields);
+        connection.keyCommands().expire(key, ttlSeconds);
+    }
+
+    private static byte[] key(long origin) {
+        return (PREFIX + Coordinates.longitude(origin) + "," + Coordinates.latitude(origin)).getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,113 @@
+package com.example.algorithm;
+
+/**
+ * 巨型路线的最优切分。
+ * 给定客户的访问顺序，在载重和时长限制下求总距离最小的车辆划分(Bellman最短路)。
+ * 用需求、距离、时长的前缀和在O(1)内计算任意一段线路的代价，
+ * 每个终点只向前扫描到载重超限为止，复杂度O(n·k)，k为单车最多能装的客户数。
+ * <p>
+ * 内部数组在多次切分之间复用，实例不是线程安全的
+ */
+public class RouteSplitter {
+    private final VrpInstance instance;
+    /**
+     * 前i个客户的需求之和
+     */
+    private final int[] loads;
+    /**
+     * 第1个客户到第i个客户之间相邻客户的距离之和
+     */
+    private final double[] distances;
+    /**
+     * 第1个客户到第i个客户之间相邻客户的时长之和
+     */
+    private final long[] durations;
+    /**
+     * 前i个客户切分后的最小总距离
+     */
+    private final double[] costs;
+    /**
+     * 前i个客户的最优切分中，最后一条线路的起始位置
+     */
+    private final int[] predecessors;
+    private double cost;
+
+    public RouteSplitter(VrpInstance instance) {
+        int n = instance.getCustomers();
+        this.instance = instance;
+        this.loads = new int[n + 1];
+        this.distances = new double[n + 1];
+        this.durations = new long[n + 1];
+        this.costs = new double[n + 1];
+        this.predecessors = new int[n + 1];
+    }
+
+    /**
+     * 切分巨型路线
+     *
+     * @param tour   客户槽位的排列
+     * @param starts 输出：每条线路在tour中的起始位置，最后一个元素为tour的长度，长度至少为tour.length+1
+     * @return 车辆数
+     */
+    public int split(int[] tour, int[] starts) {
+        int n = tour.length;
+        int capacity = instance.getCapacity();
+        long maxDuration = instance.getMaxDuration();
+        for (int i = 1; i <= n; i++) {
+            loads[i] = loads[i - 1] + instance.demand(tour[i - 1]);
+            if (i == 1) {
+                distances[i] = 0;
+                durations[i] = 0;
+            } else {
+                distances[i] = distances[i - 1] + instance.distance(tour[i - 2], tour[i - 1]);
+                durations[i] = durations[i - 1] + instance.duration(tour[i - 2], tour[i - 1]);
+            }
+        }
+        costs[0] = 0;
+        for (int j = 1; j <= n; j++) {
+            int last = tour[j - 1];
+            double best = Double.POSITIVE_INFINITY;
+            int predecessor = j - 1;
+            // 线路为tour[i..j-1]，i从j-1向前扩展
+            for (int i = j - 1; i >= 0; i--) {
+                if (loads[j] - loads[i] > capacity) {
+                    break;
+                }
+                int first = tour[i];
+                long duration = instance.duration(DistanceMatrix.DEPOT, first) + durations[j] - durations[i + 1]
+                        + instance.duration(last, DistanceMatrix.DEPOT);
+                // 只有一个客户的线路总是允许的，否则该客户无法配送
+                if (duration > maxDuration && i < j - 1) {
+                    continue;
+                }
+                double value = costs[i] + instance.distance(DistanceMatrix.DEPOT, first) + distances[j] - distances[i + 1]
+                        + instance.distance(last, DistanceMatrix.DEPOT);
+                if (value < best) {
+                    best = value;
+                    predecessor = i;
+                }
+            }
+            costs[j] = best;
+            predecessors[j] = predecessor;
+        }
+        cost = costs[n];
+
+        int routes = 0;
+        for (int j = n; j > 0; j = predecessors[j]) {
+            routes++;
+        }
+        starts[routes] = n;
+        int r = routes;
+        for (int j = n; j > 0; j = predecessors[j]) {
+            starts[--r] = predecessors[j];
+        }
+        return routes;
+    }
+
+    /**
+     * 最近一次切分的总距离
+     */
+    public double getCost() {
+        return cost;
+    }
+}
@@ -0,0 +1,28 @@
+package com.example.algorithm;
+
+import com.example.model.UserVo;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 线路求解器，不同的算法实现该接口后注册为bean，规划线路时按名称选择
+ */
+public interface Solver {
+    /**
+     * 求解器名称，用于在请求中选择
+     */
+    String getName();
+
+    /**
+     * 求解线路
+     *
+     * @param customers        客户列表
+     * @param distanceProvider 距离来源
+     * @param options          求解参数
+     * @param control          终止条件，求解过程中可以从中读取当前最优方案
+     * @return bestRoute：最优方案，routs：候选方案
+     */
+    Map<String, Object> solve(List<UserVo> customers, DistanceProvider distanceProvider,
+                              SolverOptions options, SolverControl<VehicleRoutingProblem.Route> control);
+}
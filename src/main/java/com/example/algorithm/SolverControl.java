@@ -0,0 +1,192 @@
+package com.example.algorithm;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.function.Supplier;
+
+/**
+ * 求解过程的终止条件和当前最优解。
+ * 求解器每一代调用{@link #isFinished(int)}判断是否继续，找到更好的解时调用{@link #update}；
+ * 调用方可以在任意时刻从其他线程读取当前最优解或取消求解。
+ * <p>
+ * 终止条件(满足任意一个即停止)：代数上限、时间上限、连续若干代没有改进、达到目标值、被取消；
+ * 求解器也可以按自身的条件结束，调用{@link #finish(StopReason)}记录原因
+ *
+ * @param <T> 解的类型
+ */
+public class SolverControl<T> {
+    public enum StopReason {
+        GENERATIONS, TIME_LIMIT, STAGNATION, TARGET, CANCELLED,
+        /**
+         * 求解器自身的终止条件，如没有可以执行的操作、所有子问题都已求解
+         */
+        COMPLETED
+    }
+
+    /**
+     * 最大代数，不大于0时使用求解器的默认值
+     */
+    @Getter
+    @Setter
+    private int maxGenerations;
+    /**
+     * 时间上限，单位：毫秒，不大于0时不限制
+     */
+    @Getter
+    @Setter
+    private long timeLimit;
+    /**
+     * 连续多少代没有改进时停止，不大于0时不限制
+     */
+    @Getter
+    @Setter
+    private int stagnation;
+    /**
+     * 目标值，最优解不超过target*(1+targetGap)时停止，为NaN时不限制
+     */
+    @Getter
+    @Setter
+    private double target = Double.NaN;
+    @Getter
+    @Setter
+    private double targetGap;
+
+    private volatile boolean cancelled;
+    private volatile long startTime;
+    private volatile long deadline;
+    /**
+     * 是否有时间上限。没有上限时不比较deadline：nanoTime可以是负数，与Long.MAX_VALUE相减会溢出
+     */
+    private volatile boolean timed;
+    private int generationLimit;
+    @Getter
+    private volatile int generation;
+    private volatile int lastImprovement;
+    @Getter
+    private volatile double bestCost = Double.POSITIVE_INFINITY;
+    private volatile Best<T> best;
+    @Getter
+    private volatile StopReason stopReason;
+
+    /**
+     * 求解器开始迭代前调用
+     *
+     * @param defaultMaxGenerations 求解器默认的最大代数
+     */
+    public void start(int defaultMaxGenerations) {
+        generationLimit = maxGenerations > 0 ? maxGenerations : defaultMaxGenerations;
+        startTime = System.nanoTime();
+        timed = timeLimit > 0;
+        deadline = startTime + timeLimit * 1_000_000L;
+        generation = 0;
+        lastImprovement = 0;
+        stopReason = null;
+    }
+
+    /**
+     * 判断是否应该停止，满足终止条件时记录原因
+     *
+     * @param generation 已完成的代数
+     * @return 是否停止
+     */
+    public boolean isFinished(int generation) {
+        this.generation = generation;
+        StopReason reason = null;
+        if (cancelled) {
+            reason = StopReason.CANCELLED;
+        } else if (generation >= generationLimit) {
+            reason = StopReason.GENERATIONS;
+        } else if (!Double.isNaN(target) && bestCost <= target * (1 + targetGap)) {
+            reason = StopReason.TARGET;
+        } else if (stagnation > 0 && generation - lastImprovement >= stagnation) {
+            reason = StopReason.STAGNATION;
+        } else if (timed && System.nanoTime() - deadline >= 0) {
+            reason = StopReason.TIME_LIMIT;
+        }
+        if (reason != null && stopReason == null) {
+            stopReason = reason;
+        }
+        return reason != null;
+    }
+
+    /**
+     * 求解器按自身的条件结束时调用，已经有终止原因时不覆盖
+     */
+    public void finish(StopReason reason) {
+        if (stopReason == null) {
+            stopReason = reason;
+        }
+    }
+
+    /**
+     * 求解进度，0到1之间，取代数和时间两者中较大的比例，供按进度调整参数的算法使用
+     */
+    public double progress() {
+        double progress = generationLimit > 0 ? (double) generation / generationLimit : 0;
+        if (timeLimit > 0) {
+            progress = Math.max(progress, (System.nanoTime() - startTime) / (timeLimit * 1_000_000.0));
+        }
+        return Math.min(1, progress);
+    }
+
+    /**
+     * 是否比当前最优解更好，用于在生成解的快照之前过滤
+     */
+    public boolean improves(double cost) {
+        return cost < bestCost;
+    }
+
+    /**
+     * 记录更好的解
+     *
+     * @param generation 找到该解的代数
+     * @param cost       代价，越小越好
+     * @param solution   解的快照，只在读取时才转换
+     */
+    public synchronized void update(int generation, double cost, Supplier<T> solution) {
+        if (cost < bestCost) {
+            bestCost = cost;
+            best = new Best<>(solution);
+            lastImprovement = Math.max(lastImprovement, generation);
+        }
+    }
+
+    /**
+     * 当前最优解，还没有解时返回null
+     */
+    public T getBest() {
+        Best<T> current = best;
+        return current == null ? null : current.get();
+    }
+
+    /**
+     * 取消求解，求解器在当前一代结束后停止
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * 最优解的快照，第一次读取时转换并缓存
+     */
+    private static class Best<T> {
+        private final Supplier<T> supplier;
+        private T value;
+
+        Best(Supplier<T> supplier) {
+            this.supplier = supplier;
+        }
+
+        synchronized T get() {
+            if (value == null) {
+                value = supplier.get();
+            }
+            return value;
+        }
+    }
+}
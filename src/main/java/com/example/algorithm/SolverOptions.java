@@ -0,0 +1,29 @@
+package com.example.algorithm;
+
+import lombok.Data;
+
+/**
+ * 线路求解参数
+ */
+@Data
+public class SolverOptions {
+    /**
+     * 随机数种子，为空时每次求解使用不同的种子
+     */
+    private Long seed;
+    /**
+     * 是否多线程生成和评估子代
+     */
+    private boolean parallel = true;
+    /**
+     * 岛屿数量，大于1时使用岛屿模型，每个岛屿一个线程
+     */
+    private int islands;
+
+    /**
+     * 本次求解使用的随机数种子
+     */
+    public long resolveSeed() {
+        return seed == null ? System.nanoTime() : seed;
+    }
+}
@@ -0,0 +1,731 @@
+package com.example.algorithm;
+
+import com.example.algorithm.VehicleRoutingProblem.Individual;
+import com.example.algorithm.VehicleRoutingProblem.Route;
+import com.example.model.UserVo;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+
+/**
+ * 粒度禁忌搜索，用于客户较多的规划。
+ * 每个客户只保留到最近的20%客户的边(最多{@link #MAX_CANDIDATES}条)以及与仓库相连的边作为候选边，
+ * 每次迭代只评估至少引入一条候选边的操作：移动一个客户(包括移到一条空线路)、交换两个客户、路线内2-opt、跨路线2-opt*。
+ * 每条线路按访问顺序维护载重、距离、时长的前缀和(正反两个方向)，所有操作的变化量都能在O(1)内算出。
+ * 操作的评估结果按(客户, 候选客户, 操作)缓存，执行一个操作后只重新评估改动的两条线路上的客户，
+ * 以及以这些客户为候选的操作，每次迭代其余的工作只是扫描缓存选出最好的操作。
+ * 每次迭代执行不被禁忌的最好操作(即使变差)，操作涉及的客户在随机的禁忌期内不能再被移动，能得到新的可行最优解时不受禁忌限制。
+ * 搜索过程中允许线路超载，超载量按自适应的惩罚计入代价，只有不超载的解才记为最优解。
+ * <p>
+ * 初始解为节约算法的结果重新最优切分。
+ * <p>
+ * 路线保存为带仓库哨兵节点的双向循环链表：客户节点编号即槽位1..n，第r条线路的仓库哨兵编号为n+1+r
+ */
+@Slf4j
+@Component
+public class TabuSolver implements Solver {
+    public static final String NAME = "tabu";
+
+    /**
+     * 默认最大迭代次数
+     */
+    private static final int MAX_ITERATIONS = 100000;
+    /**
+     * 候选边占全部边的比例
+     */
+    private static final double GRANULARITY = 0.2;
+    /**
+     * 每个客户最多的候选边数量，客户很多时限制每次迭代的评估量
+     */
+    private static final int MAX_CANDIDATES = 40;
+    /**
+     * 禁忌期限(迭代次数)为[TENURE_MIN, TENURE_MIN + TENURE_RANGE)之间的随机数
+     */
+    private static final int TENURE_MIN = 15;
+    private static final int TENURE_RANGE = 10;
+    /**
+     * 连续多少次迭代超载(或不超载)后调整超载惩罚
+     */
+    private static final int PENALTY_STREAK = 10;
+    private static final double EPSILON = 1e-6;
+
+    static final int RELOCATE = 0;
+    static final int SWAP = 1;
+    static final int TWO_OPT = 2;
+    static final int TWO_OPT_STAR = 3;
+    /**
+     * 每对(客户, 候选客户)缓存的操作数：移到候选之后、移到候选之前、交换、2-opt或2-opt*
+     */
+    private static final int MOVES_PER_CANDIDATE = 4;
+    private static final int NONE = -1;
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public Map<String, Object> solve(List<UserVo> customers, DistanceProvider distanceProvider,
+                                     SolverOptions options, SolverControl<Route> control) {
+        VrpInstance instance = VrpInstance.of(customers, distanceProvider.matrix(customers));
+        Search search = new Search(instance, new SplittableRandom(options.resolveSeed()));
+        search.run(customers, control);
+        log.info("tabu search stopped, reason:{}, iterations:{}, cost:{}",
+                control.getStopReason(), control.getGeneration(), control.getBestCost());
+        Route best = control.getBest();
+        Map<String, Object> result = new HashMap<>();
+        result.put("bestRoute", best);
+        result.put("routs", Collections.singletonList(best));
+        return result;
+    }
+
+    /**
+     * 一次求解的状态
+     */
+    static class Search {
+        private final VrpInstance instance;
+        private final int n;
+        private final SplittableRandom random;
+        private final int[][] candidates;
+        private final int[] next;
+        private final int[] prev;
+        private final int[] routeOf;
+        private final int[] position;
+        private final int[] loadPrefix;
+        private final double[] distancePrefix;
+        private final double[] reverseDistancePrefix;
+        private final long[] durationPrefix;
+        private final long[] reverseDurationPrefix;
+        private final int[] loads;
+        private final double[] distances;
+        private final long[] durations;
+        private final int[] buffer;
+        /**
+         * 禁忌表：客户到禁忌结束的迭代次数
+         */
+        private final int[] tabu;
+        /**
+         * 操作缓存：客户u的第k个候选的操作从offsets[u]+k*MOVES_PER_CANDIDATE开始，
+         * 最后一个位置(offsets[u+1]-1)是移到空线路。类型为NONE表示不可行或不改变代价
+         */
+        private final int[] offsets;
+        private final int[] cachedType;
+        private final int[] cachedU;
+        private final int[] cachedV;
+        private final double[] cachedDelta;
+        private final int[] cachedOverload;
+        /**
+         * 以客户v为候选的(客户u, 候选序号k)，v的部分在[reverseOffsets[v], reverseOffsets[v+1])
+         */
+        private final int[] reverseOffsets;
+        private final int[] reverseCustomers;
+        private final int[] reverseIndices;
+        /**
+         * 移到空线路的操作按哪条空线路评估的
+         */
+        private int evaluatedEmpty = NONE;
+        private int routes;
+        /**
+         * 一条空线路，客户可以移到这里单独成为一条线路，没有空线路时为-1
+         */
+        private int empty;
+        /**
+         * 当前解的总距离，不含惩罚
+         */
+        double cost;
+        /**
+         * 当前解各线路超载量之和
+         */
+        private int excess;
+        /**
+         * 每单位超载的惩罚
+         */
+        private double penalty;
+        /**
+         * 连续可行(正数)或不可行(负数)的迭代次数
+         */
+        private int streak;
+        private int iteration;
+
+        private final int[] bestTour;
+        private final int[] bestStarts;
+        private int bestRoutes;
+        private double bestCost = Double.POSITIVE_INFINITY;
+
+        int moveType;
+        private int moveU;
+        private int moveV;
+        /**
+         * 选中操作加上超载惩罚后的变化量
+         */
+        double moveDelta;
+
+        Search(VrpInstance instance, SplittableRandom random) {
+            this.instance = instance;
+            this.n = instance.getCustomers();
+            this.random = random;
+            int k = Math.min(MAX_CANDIDATES, Math.max(1, (int) Math.ceil(GRANULARITY * (n - 1))));
+            this.candidates = LocalSearch.nearestNeighbors(instance, k);
+            int nodes = 2 * n + 1;
+            this.next = new int[nodes];
+            this.prev = new int[nodes];
+            this.routeOf = new int[nodes];
+            this.position = new int[nodes];
+            this.loadPrefix = new int[nodes];
+            this.distancePrefix = new double[nodes];
+            this.reverseDistancePrefix = new double[nodes];
+            this.durationPrefix = new long[nodes];
+            this.reverseDurationPrefix = new long[nodes];
+            this.loads = new int[n];
+            this.distances = new double[n];
+            this.durations = new long[n];
+            this.buffer = new int[n];
+            this.tabu = new int[n + 1];
+            this.bestTour = new int[n];
+            this.bestStarts = new int[n + 1];
+            this.offsets = new int[n + 2];
+            this.reverseOffsets = new int[n + 2];
+            for (int u = 1; u <= n; u++) {
+                offsets[u + 1] = offsets[u] + candidates[u].length * MOVES_PER_CANDIDATE + 1;
+                for (int v : candidates[u]) {
+                    reverseOffsets[v + 1]++;
+                }
+            }
+            int entries = offsets[n + 1];
+            this.cachedType = new int[entries];
+            this.cachedU = new int[entries];
+            this.cachedV = new int[entries];
+            this.cachedDelta = new double[entries];
+            this.cachedOverload = new int[entries];
+            for (int v = 1; v <= n; v++) {
+                reverseOffsets[v + 1] += reverseOffsets[v];
+            }
+            this.reverseCustomers = new int[reverseOffsets[n + 1]];
+            this.reverseIndices = new int[reverseOffsets[n + 1]];
+            int[] filled = new int[n + 1];
+            for (int u = 1; u <= n; u++) {
+                for (int c = 0; c < candidates[u].length; c++) {
+                    int v = candidates[u][c];
+                    int index = reverseOffsets[v] + filled[v]++;
+                    reverseCustomers[index] = u;
+                    reverseIndices[index] = c;
+                }
+            }
+        }
+
+        void run(List<UserVo> customers, SolverControl<Route> control) {
+            control.start(MAX_ITERATIONS);
+            int[] tour = new int[n];
+            new TourConstructor(instance).savings(tour, random, 0);
+            int[] starts = new int[n + 1];
+            int routeCount = new RouteSplitter(instance).split(tour, starts);
+            load(tour, starts, routeCount);
+            penalty = cost / Math.max(1, totalDemand());
+            offer(control, customers);
+
+            while (!control.isFinished(iteration)) {
+                double best = bestCost;
+                if (!step()) {
+                    // 所有操作都不可行或被禁忌
+                    control.finish(SolverControl.StopReason.COMPLETED);
+                    break;
+                }
+                if (bestCost < best) {
+                    offer(control, customers);
+                }
+            }
+        }
+
+        /**
+         * 一次迭代：执行不被禁忌的最好操作，得到更好的可行解时记为最优解
+         *
+         * @return 是否找到可以执行的操作
+         */
+        boolean step() {
+            iteration++;
+            if (!findMove()) {
+                return false;
+            }
+            int ru = routeOf[moveU];
+            int rv = routeOf[moveV];
+            apply();
+            ensureEmptyRoute();
+            refresh(ru, rv);
+            adjustPenalty();
+            if (excess == 0 && cost < bestCost - EPSILON) {
+                saveBest();
+            }
+            return true;
+        }
+
+        /**
+         * 载入一个可行解作为当前解和最优解
+         */
+        void load(int[] tour, int[] starts, int routeCount) {
+            routes = routeCount;
+            cost = 0;
+            for (int r = 0; r < routeCount; r++) {
+                int depot = depot(r);
+                int last = depot;
+                for (int i = starts[r]; i < starts[r + 1]; i++) {
+                    link(last, tour[i]);
+                    last = tour[i];
+                }
+                link(last, depot);
+                renumber(r);
+                cost += distances[r];
+            }
+            empty = -1;
+            ensureEmptyRoute();
+            for (int u = 1; u <= n; u++) {
+                evaluate(u);
+            }
+            evaluatedEmpty = empty;
+            saveBest();
+        }
+
+        /**
+         * 保证有一条空线路，否则线路只能合并不能拆分，超载后可能无法恢复
+         */
+        private void ensureEmptyRoute() {
+            if (empty >= 0 && next[depot(empty)] == depot(empty)) {
+                return;
+            }
+            for (int r = 0; r < routes; r++) {
+                if (next[depot(r)] == depot(r)) {
+                    empty = r;
+                    return;
+                }
+            }
+            if (routes < n) {
+                empty = routes++;
+                link(depot(empty), depot(empty));
+                renumber(empty);
+            } else {
+                empty = -1;
+            }
+        }
+
+        private int totalDemand() {
+            int total = 0;
+            for (int c = 1; c <= n; c++) {
+                total += instance.demand(c);
+            }
+            return total;
+        }
+
+        /**
+         * 连续{@link #PENALTY_STREAK}次迭代都超载时加倍惩罚，都不超载时减半
+         */
+        private void adjustPenalty() {
+            streak = excess > 0 ? Math.min(streak, 0) - 1 : Math.max(streak, 0) + 1;
+            if (streak <= -PENALTY_STREAK) {
+                penalty *= 2;
+                streak = 0;
+            } else if (streak >= PENALTY_STREAK) {
+                penalty /= 2;
+                streak = 0;
+            }
+        }
+
+        private void saveBest() {
+            int index = 0;
+            int count = 0;
+            for (int r = 0; r < routes; r++) {
+                int depot = depot(r);
+                if (next[depot] == depot) {
+                    continue;
+                }
+                bestStarts[count++] = index;
+                for (int c = next[depot]; c != depot; c = next[c]) {
+                    bestTour[index++] = c;
+                }
+            }
+            bestStarts[count] = index;
+            bestRoutes = count;
+            bestCost = cost;
+        }
+
+        private void offer(SolverControl<Route> control, List<UserVo> customers) {
+            Individual individual = new Individual(n);
+            System.arraycopy(bestTour, 0, individual.tour, 0, n);
+            System.arraycopy(bestStarts, 0, individual.starts, 0, bestRoutes + 1);
+            individual.routes = bestRoutes;
+            individual.cost = bestCost;
+            individual.hash = FitnessMemo.hash(individual.tour);
+            control.update(iteration, bestCost, () -> VehicleRoutingProblem.toRoute(individual, instance, customers, "最优方案"));
+        }
+
+        /**
+         * 在缓存的操作中找不被禁忌(或满足特赦)的最好操作
+         *
+         * @return 是否找到
+         */
+        private boolean findMove() {
+            moveDelta = Double.POSITIVE_INFINITY;
+            for (int e = 0; e < cachedType.length; e++) {
+                if (cachedType[e] == NONE) {
+                    continue;
+                }
+                double delta = cachedDelta[e];
+                int overload = cachedOverload[e];
+                double penalized = delta + penalty * overload;
+                if (penalized >= moveDelta) {
+                    continue;
+                }
+                int u = cachedU[e];
+                int v = cachedV[e];
+                boolean aspiration = excess + overload == 0 && cost + delta < bestCost - EPSILON;
+                if (!aspiration && (tabu[u] > iteration || (!isDepot(v) && tabu[v] > iteration))) {
+                    continue;
+                }
+                moveType = cachedType[e];
+                moveU = u;
+                moveV = v;
+                moveDelta = penalized;
+            }
+            return moveDelta < Double.POSITIVE_INFINITY;
+        }
+
+        /**
+         * 重新评估线路ru、rv上的客户的所有操作，以及其他客户以这些客户为候选的操作。
+         * 这两条线路之外的操作只与所在线路有关，缓存的结果不变
+         */
+        private void refresh(int ru, int rv) {
+            refreshRoute(ru, ru, rv);
+            if (rv != ru) {
+                refreshRoute(rv, ru, rv);
+            }
+            if (empty != evaluatedEmpty) {
+                // 空线路换了一条，所有客户移到空线路的操作重新评估
+                for (int u = 1; u <= n; u++) {
+                    evaluateEmpty(u);
+                }
+                evaluatedEmpty = empty;
+            }
+        }
+
+        /**
+         * 重新评估线路r上的客户，以及以这些客户为候选的其他线路客户的操作
+         */
+        private void refreshRoute(int r, int ru, int rv) {
+            int depot = depot(r);
+            for (int c = next[depot]; c != depot; c = next[c]) {
+                evaluate(c);
+                for (int i = reverseOffsets[c]; i < reverseOffsets[c + 1]; i++) {
+                    int u = reverseCustomers[i];
+                    if (routeOf[u] != ru && routeOf[u] != rv) {
+                        evaluate(u, reverseIndices[i]);
+                    }
+                }
+            }
+        }
+
+        /**
+         * 评估客户u的所有操作
+         */
+        private void evaluate(int u) {
+            for (int k = 0; k < candidates[u].length; k++) {
+                evaluate(u, k);
+            }
+            evaluateEmpty(u);
+        }
+
+        /**
+         * 评估客户u与第k个候选客户v之间的操作，只与u、v所在的线路有关
+         */
+        private void evaluate(int u, int k) {
+            int entry = offsets[u] + k * MOVES_PER_CANDIDATE;
+            for (int i = 0; i < MOVES_PER_CANDIDATE; i++) {
+                cachedType[entry + i] = NONE;
+            }
+            int v = candidates[u][k];
+            int pu = prev[u];
+            int nu = next[u];
+            int pv = prev[v];
+            int nv = next[v];
+            // 把u移到v之后、v之前
+            if (v != pu) {
+                evaluateRelocate(entry, u, v);
+            }
+            if (pv != u && pv != pu) {
+                evaluateRelocate(entry + 1, u, pv);
+            }
+            if (nu != v && nv != u) {
+                evaluateSwap(entry + 2, u, v);
+            }
+            if (routeOf[u] == routeOf[v]) {
+                evaluateTwoOpt(entry + 3, u, v);
+            } else {
+                evaluateTwoOptStar(entry + 3, u, v);
+            }
+        }
+
+        /**
+         * 与仓库相连的边总是候选边：把u移到空线路
+         */
+        private void evaluateEmpty(int u) {
+            int entry = offsets[u + 1] - 1;
+            cachedType[entry] = NONE;
+            if (empty >= 0) {
+                evaluateRelocate(entry, u, depot(empty));
+            }
+        }
+
+        /**
+         * 把u移到after之后
+         */
+        private void evaluateRelocate(int entry, int u, int after) {
+            if (after == u) {
+                return;
+            }
+            int pu = prev[u];
+            int nu = next[u];
+            int na = next[after];
+            double delta = d(pu, nu) - d(pu, u) - d(u, nu) + d(after, u) + d(u, na) - d(after, na);
+            long removed = t(pu, nu) - t(pu, u) - t(u, nu);
+            long inserted = t(after, u) + t(u, na) - t(after, na);
+            int from = routeOf[u];
+            int to = routeOf[after];
+            if (from == to) {
+                consider(entry, RELOCATE, u, after, delta, from, loads[from], durations[from] + removed + inserted, -1, 0, 0);
+            } else {
+                consider(entry, RELOCATE, u, after, delta, from, loads[from] - instance.demand(u), durations[from] + removed,
+                        to, loads[to] + instance.demand(u), durations[to] + inserted);
+            }
+        }
+
+        /**
+         * 交换不相邻的u和v
+         */
+        private void evaluateSwap(int entry, int u, int v) {
+            int pu = prev[u];
+            int nu = next[u];
+            int pv = prev[v];
+            int nv = next[v];
+            double delta = d(pu, v) + d(v, nu) + d(pv, u) + d(u, nv) - d(pu, u) - d(u, nu) - d(pv, v) - d(v, nv);
+            long aroundU = t(pu, v) + t(v, nu) - t(pu, u) - t(u, nu);
+            long aroundV = t(pv, u) + t(u, nv) - t(pv, v) - t(v, nv);
+            int ru = routeOf[u];
+            int rv = routeOf[v];
+            int demandDelta = instance.demand(v) - instance.demand(u);
+            if (ru == rv) {
+                consider(entry, SWAP, u, v, delta, ru, loads[ru], durations[ru] + aroundU + aroundV, -1, 0, 0);
+            } else {
+                consider(entry, SWAP, u, v, delta, ru, loads[ru] + demandDelta, durations[ru] + aroundU,
+                        rv, loads[rv] - demandDelta, durations[rv] + aroundV);
+            }
+        }
+
+        /**
+         * 路线内2-opt：反转前一个客户之后到后一个客户的一段，使两者相邻
+         */
+        private void evaluateTwoOpt(int entry, int u, int v) {
+            int a = position[u] < position[v] ? u : v;
+            int b = a == u ? v : u;
+            int f = next[a];
+            if (f == b) {
+                return;
+            }
+            int nb = next[b];
+            double delta = d(a, b) + d(f, nb) - d(a, f) - d(b, nb)
+                    + (reverseDistancePrefix[b] - reverseDistancePrefix[f]) - (distancePrefix[b] - distancePrefix[f]);
+            long duration = t(a, b) + t(f, nb) - t(a, f) - t(b, nb)
+                    + (reverseDurationPrefix[b] - reverseDurationPrefix[f]) - (durationPrefix[b] - durationPrefix[f]);
+            int r = routeOf[u];
+            consider(entry, TWO_OPT, a, b, delta, r, loads[r], durations[r] + duration, -1, 0, 0);
+        }
+
+        /**
+         * 跨路线2-opt*：u所在线路的前半段接上v开始的后半段，v之前的前半段接上u之后的后半段
+         */
+        private void evaluateTwoOptStar(int entry, int u, int v) {
+            int nu = next[u];
+            int pv = prev[v];
+            double delta = d(u, v) + d(pv, nu) - d(u, nu) - d(pv, v);
+            int ru = routeOf[u];
+            int rv = routeOf[v];
+            int loadU = loadPrefix[u] + loads[rv] - loadPrefix[pv];
+            int loadV = loadPrefix[pv] + loads[ru] - loadPrefix[u];
+            long durationU = durationPrefix[u] + t(u, v) + durations[rv] - durationPrefix[v];
+            long durationV = durationPrefix[pv] + t(pv, nu) + (isDepot(nu) ? 0 : durations[ru] - durationPrefix[nu]);
+            consider(entry, TWO_OPT_STAR, u, v, delta, ru, loadU, durationU, rv, loadV, durationV);
+        }
+
+        /**
+         * 检查操作后一到两条线路的时长，可行时把变化量和超载量的变化记入缓存。
+         * 禁忌和特赦与迭代次数、当前最优解有关，在{@link #findMove()}中判断
+         *
+         * @param first  第一条线路及操作后的载重、时长
+         * @param second 第二条线路，只涉及一条线路时为-1
+         */
+        private void consider(int entry, int type, int u, int v, double delta,
+                              int first, int firstLoad, long firstDuration,
+                              int second, int secondLoad, long secondDuration) {
+            int overload = overload(firstLoad) - overload(loads[first]);
+            if (!feasible(first, firstDuration)) {
+                return;
+            }
+            if (second >= 0) {
+                if (!feasible(second, secondDuration)) {
+                    return;
+                }
+                overload += overload(secondLoad) - overload(loads[second]);
+            }
+            if (Math.abs(delta) < EPSILON && overload == 0) {
+                // 位置相同的客户互换等不改变代价的操作，执行后禁忌表也拦不住来回反复
+                return;
+            }
+            cachedType[entry] = type;
+            cachedU[entry] = u;
+            cachedV[entry] = v;
+            cachedDelta[entry] = delta;
+            cachedOverload[entry] = overload;
+        }
+
+        private void apply() {
+            int u = moveU;
+            int v = moveV;
+            int ru = routeOf[u];
+            int rv = routeOf[v];
+            double before = distances[ru] + (rv != ru ? distances[rv] : 0);
+            int overloaded = overload(loads[ru]) + (rv != ru ? overload(loads[rv]) : 0);
+            switch (moveType) {
+                case RELOCATE:
+                    link(prev[u], next[u]);
+                    int after = next[v];
+                    link(v, u);
+                    link(u, after);
+                    break;
+                case SWAP:
+                    int pu = prev[u];
+                    int nu = next[u];
+                    int pv = prev[v];
+                    int nv = next[v];
+                    link(pu, v);
+                    link(v, nu);
+                    link(pv, u);
+                    link(u, nv);
+                    break;
+                case TWO_OPT:
+                    reverse(next[u], v);
+                    break;
+                default:
+                    twoOptStar(u, v);
+                    break;
+            }
+            forbid(u);
+            if (!isDepot(v)) {
+                forbid(v);
+            }
+            renumber(ru);
+            if (rv != ru) {
+                renumber(rv);
+            }
+            cost += distances[ru] + (rv != ru ? distances[rv] : 0) - before;
+            excess += overload(loads[ru]) + (rv != ru ? overload(loads[rv]) : 0) - overloaded;
+        }
+
+        private void twoOptStar(int u, int v) {
+            int du = depot(routeOf[u]);
+            int dv = depot(routeOf[v]);
+            int nu = next[u];
+            int pv = prev[v];
+            int lastU = prev[du];
+            int lastV = prev[dv];
+            link(u, v);
+            link(lastV, du);
+            if (nu == du) {
+                link(pv, dv);
+            } else {
+                link(pv, nu);
+                link(lastU, dv);
+            }
+        }
+
+        private void reverse(int first, int last) {
+            int before = prev[first];
+            int after = next[last];
+            int count = 0;
+            for (int c = first; ; c = next[c]) {
+                buffer[count++] = c;
+                if (c == last) {
+                    break;
+                }
+            }
+            int current = before;
+            for (int i = count - 1; i >= 0; i--) {
+                link(current, buffer[i]);
+                current = buffer[i];
+            }
+            link(current, after);
+        }
+
+        /**
+         * 重新计算线路上各节点的位置和前缀和，以及线路的载重、时长和距离
+         */
+        private void renumber(int r) {
+            int depot = depot(r);
+            routeOf[depot] = r;
+            position[depot] = 0;
+            loadPrefix[depot] = 0;
+            distancePrefix[depot] = 0;
+            reverseDistancePrefix[depot] = 0;
+            durationPrefix[depot] = 0;
+            reverseDurationPrefix[depot] = 0;
+            int last = depot;
+            int index = 0;
+            for (int c = next[depot]; c != depot; c = next[c]) {
+                routeOf[c] = r;
+                position[c] = ++index;
+                loadPrefix[c] = loadPrefix[last] + instance.demand(c);
+                distancePrefix[c] = distancePrefix[last] + d(last, c);
+                reverseDistancePrefix[c] = reverseDistancePrefix[last] + d(c, last);
+                durationPrefix[c] = durationPrefix[last] + t(last, c);
+                reverseDurationPrefix[c] = reverseDurationPrefix[last] + t(c, last);
+                last = c;
+            }
+            loads[r] = loadPrefix[last];
+            distances[r] = last == depot ? 0 : distancePrefix[last] + d(last, depot);
+            durations[r] = last == depot ? 0 : durationPrefix[last] + t(last, depot);
+        }
+
+        private boolean feasible(int route, long duration) {
+            return duration <= instance.getMaxDuration() || duration <= durations[route];
+        }
+
+        private int overload(int load) {
+            return Math.max(0, load - instance.getCapacity());
+        }
+
+        private void forbid(int customer) {
+            tabu[customer] = iteration + TENURE_MIN + random.nextInt(TENURE_RANGE);
+        }
+
+        private void link(int from, int to) {
+            next[from] = to;
+            prev[to] = from;
+        }
+
+        private int depot(int r) {
+            return n + 1 + r;
+        }
+
+        private boolean isDepot(int node) {
+            return node > n;
+        }
+
+        private int slot(int node) {
+            return node > n ? DistanceMatrix.DEPOT : node;
+        }
+
+        private double d(int from, int to) {
+            return instance.distance(slot(from), slot(to));
+        }
+
+        private long t(int from, int to) {
+            return instance.duration(slot(from), slot(to));
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.example.algorithm;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 令牌桶限流。
+ * 令牌按固定速率补充，最多积累burst个；有交互请求在等待时，后台请求不会拿到令牌
+ */
+public class TokenBucket {
+    private final double permitsPerNano;
+    private final double burst;
+    private double tokens;
+    private long lastRefill;
+    private int interactiveWaiting;
+
+    /**
+     * @param permitsPerSecond 每秒补充的令牌数
+     * @param burst            最多积累的令牌数
+     */
+    public TokenBucket(double permitsPerSecond, double burst) {
+        if (permitsPerSecond <= 0 || burst < 1) {
+            throw new IllegalArgumentException("限流速率必须大于0，容量不能小于1");
+        }
+        this.permitsPerNano = permitsPerSecond / TimeUnit.SECONDS.toNanos(1);
+        this.burst = burst;
+        this.tokens = burst;
+        this.lastRefill = System.nanoTime();
+    }
+
+    /**
+     * 获取一个令牌，令牌不足时阻塞等待
+     *
+     * @param priority 请求优先级
+     */
+    public synchronized void acquire(AmapPriority priority) throws InterruptedException {
+        boolean interactive = priority == AmapPriority.INTERACTIVE;
+        if (interactive) {
+            interactiveWaiting++;
+        }
+        try {
+            while (true) {
+                refill();
+                boolean allowed = interactive || interactiveWaiting == 0;
+                if (allowed && tokens >= 1) {
+                    tokens -= 1;
+                    return;
+                }
+                long waitNanos = tokens >= 1 ? TimeUnit.MILLISECONDS.toNanos(1) : (long) ((1 - tokens) / permitsPerNano);
+                TimeUnit.NANOSECONDS.timedWait(this, Math.max(waitNanos, TimeUnit.MICROSECONDS.toNanos(100)));
+            }
+        } finally {
+            if (interactive) {
+                interactiveWaiting--;
+            }
+            notifyAll();
+        }
+    }
+
+    private void refill() {
+        long now = System.nanoTime();
+        tokens = Math.min(burst, tokens + (now - lastRefill) * permitsPerNano);
+        lastRefill = now;
+    }
+}
@@ -0,0 +1,243 @@
+package com.example.algorithm;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * 构造初始解的启发式算法，结果都是客户槽位的排列(巨型路线)，由{@link RouteSplitter}切分车辆。
+ * <ul>
+ *     <li>节约算法(Clarke-Wright并行版本)：每个客户单独一条线路，按节约值从大到小合并线路的首尾</li>
+ *     <li>扫描算法：按客户相对仓库的方位角排序</li>
+ *     <li>随机最近邻：每次从最近的几个未访问客户中随机选一个，装满后回到仓库</li>
+ * </ul>
+ * 节约值只在每个客户最近的{@link #SAVINGS_NEIGHBORS}个客户之间计算，复杂度O(n·k·log(n·k))；
+ * 随机最近邻用客户坐标的{@link KdTree}查找候选，扫描算法为排序，都是O(n·log n)左右。
+ * <p>
+ * 内部数组在多次构造之间复用，实例不是线程安全的
+ */
+public class TourConstructor {
+    /**
+     * 计算节约值时每个客户考虑的近邻数量
+     */
+    public static final int SAVINGS_NEIGHBORS = 100;
+    /**
+     * 随机最近邻每次从最近的几个客户中选择
+     */
+    public static final int NEAREST_CHOICES = 3;
+    /**
+     * 随机最近邻按直线距离取的候选数量
+     */
+    private static final int NEAREST_CANDIDATES = 2 * NEAREST_CHOICES;
+
+    private final VrpInstance instance;
+    private final int n;
+    private final int[][] neighbors;
+    /**
+     * 节约值(float的位模式，正数时与数值同序)在高32位，客户对的编号在低32位
+     */
+    private final long[] savings;
+    /**
+     * 客户对编号中每个客户占用的编号数，不小于近邻数量
+     */
+    private final int stride;
+    private final int[] next;
+    private final int[] routeOf;
+    private final int[] heads;
+    private final int[] tails;
+    private final int[] loads;
+    private final long[] durations;
+    private final boolean[] visited;
+    private final int[] choices;
+    private final KdTree tree;
+    private final int[] candidates;
+    private final double[] squares;
+    private final long[] angles;
+
+    public TourConstructor(VrpInstance instance) {
+        this(instance, LocalSearch.nearestNeighbors(instance, SAVINGS_NEIGHBORS));
+    }
+
+    /**
+     * @param neighbors 每个客户的近邻，见{@link LocalSearch#nearestNeighbors}
+     */
+    public TourConstructor(VrpInstance instance, int[][] neighbors) {
+        this.instance = instance;
+        this.n = instance.getCustomers();
+        this.neighbors = neighbors;
+        int pairs = 0;
+        int longest = 1;
+        for (int[] list : neighbors) {
+            pairs += list.length;
+            longest = Math.max(longest, list.length);
+        }
+        this.savings = new long[2 * pairs];
+        this.stride = longest;
+        this.next = new int[n + 1];
+        this.routeOf = new int[n + 1];
+        this.heads = new int[n + 1];
+        this.tails = new int[n + 1];
+        this.loads = new int[n + 1];
+        this.durations = new long[n + 1];
+        this.visited = new boolean[n + 1];
+        this.choices = new int[NEAREST_CHOICES];
+        this.tree = KdTree.of(instance);
+        this.candidates = new int[NEAREST_CANDIDATES];
+        this.squares = new double[NEAREST_CANDIDATES];
+        this.angles = new long[n];
+    }
+
+    /**
+     * 节约算法。合并以i结尾的线路和以j开头的线路节约d(i,0)+d(0,j)-d(i,j)，
+     * 按节约值从大到小依次合并，合并后不能超过载重和最长时间
+     *
+     * @param tour   输出：客户槽位的排列
+     * @param random 随机数流，noise为0时不使用
+     * @param noise  节约值乘以[1, 1+noise)之间的随机数，用于生成不同的解
+     */
+    public void savings(int[] tour, SplittableRandom random, double noise) {
+        for (int c = 1; c <= n; c++) {
+            next[c] = 0;
+            routeOf[c] = c;
+            heads[c] = c;
+            tails[c] = c;
+            loads[c] = instance.demand(c);
+            durations[c] = instance.duration(DistanceMatrix.DEPOT, c) + instance.duration(c, DistanceMatrix.DEPOT);
+        }
+        int count = 0;
+        for (int i = 1; i <= n; i++) {
+            for (int k = 0; k < neighbors[i].length; k++) {
+                int j = neighbors[i][k];
+                // 两个方向各一个客户对，编号为(i, k)，方向在最低位
+                count = addSaving(count, i, j, (i * stride + k) << 1, random, noise);
+                count = addSaving(count, j, i, (i * stride + k) << 1 | 1, random, noise);
+            }
+        }
+        Arrays.sort(savings, 0, count);
+        for (int s = count - 1; s >= 0; s--) {
+            int pair = (int) savings[s];
+            int i = (pair >>> 1) / stride;
+            int j = neighbors[i][(pair >>> 1) % stride];
+            if ((pair & 1) == 1) {
+                int temp = i;
+                i = j;
+                j = temp;
+            }
+            merge(i, j);
+        }
+        int index = 0;
+        for (int c = 1; c <= n; c++) {
+            if (heads[routeOf[c]] != c) {
+                continue;
+            }
+            for (int node = c; node != 0; node = next[node]) {
+                tour[index++] = node;
+            }
+        }
+    }
+
+    private int addSaving(int count, int i, int j, int pair, SplittableRandom random, double noise) {
+        double saving = instance.distance(i, DistanceMatrix.DEPOT) + instance.distance(DistanceMatrix.DEPOT, j)
+                - instance.distance(i, j);
+        if (noise > 0) {
+            saving *= 1 + noise * random.nextDouble();
+        }
+        if (saving <= 0) {
+            return count;
+        }
+        savings[count] = (long) Float.floatToIntBits((float) saving) << 32 | pair;
+        return count + 1;
+    }
+
+    /**
+     * i是所在线路的最后一个客户、j是另一条线路的第一个客户时合并两条线路
+     */
+    private void merge(int i, int j) {
+        int ri = routeOf[i];
+        int rj = routeOf[j];
+        if (ri == rj || tails[ri] != i || heads[rj] != j || loads[ri] + loads[rj] > instance.getCapacity()) {
+            return;
+        }
+        long duration = durations[ri] - instance.duration(i, DistanceMatrix.DEPOT) + instance.duration(i, j)
+                + durations[rj] - instance.duration(DistanceMatrix.DEPOT, j);
+        if (duration > instance.getMaxDuration()) {
+            return;
+        }
+        next[i] = j;
+        for (int node = j; node != 0; node = next[node]) {
+            routeOf[node] = ri;
+        }
+        tails[ri] = tails[rj];
+        loads[ri] += loads[rj];
+        durations[ri] = duration;
+    }
+
+    /**
+     * 扫描算法：从startAngle开始按逆时针方向对客户排序
+     *
+     * @param tour       输出：客户槽位的排列
+     * @param startAngle 起始方位角，单位：弧度
+     */
+    public void sweep(int[] tour, double startAngle) {
+        double depotLongitude = instance.longitude(DistanceMatrix.DEPOT);
+        double depotLatitude = instance.latitude(DistanceMatrix.DEPOT);
+        for (int c = 1; c <= n; c++) {
+            double angle = Math.atan2(instance.latitude(c) - depotLatitude, instance.longitude(c) - depotLongitude)
+                    - startAngle;
+            angle -= Math.floor(angle / (2 * Math.PI)) * 2 * Math.PI;
+            angles[c - 1] = (long) Float.floatToIntBits((float) angle) << 32 | c;
+        }
+        Arrays.sort(angles, 0, n);
+        for (int i = 0; i < n; i++) {
+            tour[i] = (int) angles[i];
+        }
+    }
+
+    /**
+     * 随机最近邻：从仓库出发，每次从最近的{@link #NEAREST_CHOICES}个未访问客户中随机选一个，
+     * 选中的客户装不下时回到仓库重新出发
+     *
+     * @param tour   输出：客户槽位的排列
+     * @param random 随机数流
+     */
+    public void nearestNeighbor(int[] tour, SplittableRandom random) {
+        Arrays.fill(visited, false);
+        int current = DistanceMatrix.DEPOT;
+        int load = 0;
+        for (int index = 0; index < n; index++) {
+            int chosen = choose(current, random);
+            if (current != DistanceMatrix.DEPOT && load + instance.demand(chosen) > instance.getCapacity()) {
+                current = DistanceMatrix.DEPOT;
+                load = 0;
+                chosen = choose(current, random);
+            }
+            visited[chosen] = true;
+            tour[index] = chosen;
+            load += instance.demand(chosen);
+            current = chosen;
+        }
+    }
+
+    /**
+     * 从离from最近的几个未访问客户中随机选一个。先用k-d树按直线距离取候选，再按距离矩阵比较
+     */
+    private int choose(int from, SplittableRandom random) {
+        int found = tree.nearest(instance.longitude(from), instance.latitude(from), candidates.length, visited,
+                candidates, squares);
+        int count = 0;
+        for (int f = 0; f < found; f++) {
+            int c = candidates[f];
+            double d = instance.distance(from, c);
+            if (count == choices.length && d >= instance.distance(from, choices[count - 1])) {
+                continue;
+            }
+            // 插入排序，保留最近的几个
+            int i = count < choices.length ? count++ : count - 1;
+            while (i > 0 && instance.distance(from, choices[i - 1]) > d) {
+                choices[i] = choices[i - 1];
+                i--;
+            }
+            choices[i] = c;
+        }
+        return choices[random.nextInt(count)];
+    }
+}
@@ -0,0 +1,216 @@
+package com.example.algorithm;
+
+/**
+ * 路径上的邻域操作。
+ * 路径为节点槽位的数组，第0个位置固定不动(仓库)，最后一个节点之后没有边；
+ * 闭合路线可以把仓库同时放在首尾，只对中间的位置操作。
+ * 每个操作在O(1)内根据距离矩阵算出路径长度的变化量，确定要执行时再修改数组。
+ * <p>
+ * 操作对象可以反复设置位置后复用，不是线程安全的
+ */
+public abstract class TourMove {
+    protected final DistanceMatrix matrix;
+
+    protected TourMove(DistanceMatrix matrix) {
+        this.matrix = matrix;
+    }
+
+    /**
+     * 执行后路径长度的变化量，负数表示变短
+     *
+     * @param path 路径
+     */
+    public abstract double delta(int[] path);
+
+    /**
+     * 执行操作
+     *
+     * @param path 路径
+     */
+    public abstract void apply(int[] path);
+
+    /**
+     * 位置p到下一个位置的边长，p为最后一个位置时为0
+     */
+    protected double next(int[] path, int p) {
+        return p + 1 < path.length ? matrix.distance(path[p], path[p + 1]) : 0;
+    }
+
+    /**
+     * 交换两个位置上的节点
+     */
+    public static class Swap extends TourMove {
+        private int i;
+        private int j;
+
+        public Swap(DistanceMatrix matrix) {
+            super(matrix);
+        }
+
+        public Swap set(int i, int j) {
+            this.i = Math.min(i, j);
+            this.j = Math.max(i, j);
+            return this;
+        }
+
+        @Override
+        public double delta(int[] path) {
+            if (i == j) {
+                return 0;
+            }
+            int a = path[i];
+            int b = path[j];
+            int prev = path[i - 1];
+            boolean hasNext = j + 1 < path.length;
+            int after = hasNext ? path[j + 1] : -1;
+            double removed;
+            double added;
+            if (j == i + 1) {
+                removed = matrix.distance(prev, a) + matrix.distance(a, b) + (hasNext ? matrix.distance(b, after) : 0);
+                added = matrix.distance(prev, b) + matrix.distance(b, a) + (hasNext ? matrix.distance(a, after) : 0);
+            } else {
+                int nextA = path[i + 1];
+                int prevB = path[j - 1];
+                removed = matrix.distance(prev, a) + matrix.distance(a, nextA) + matrix.distance(prevB, b)
+                        + (hasNext ? matrix.distance(b, after) : 0);
+                added = matrix.distance(prev, b) + matrix.distance(b, nextA) + matrix.distance(prevB, a)
+                        + (hasNext ? matrix.distance(a, after) : 0);
+            }
+            return added - removed;
+        }
+
+        @Override
+        public void apply(int[] path) {
+            int temp = path[i];
+            path[i] = path[j];
+            path[j] = temp;
+        }
+    }
+
+    /**
+     * 把从位置i开始的一段连续节点(保持顺序)移到新位置，移动后这一段从位置j开始
+     */
+    public static class OrOpt extends TourMove {
+        /**
+         * 一次最多移动的节点数
+         */
+        public static final int MAX_LENGTH = 3;
+
+        private final int[] buffer = new int[MAX_LENGTH];
+        private int i;
+        private int length;
+        private int j;
+
+        public OrOpt(DistanceMatrix matrix) {
+            super(matrix);
+        }
+
+        /**
+         * @param i      这一段的起始位置
+         * @param length 这一段的长度，1到{@link #MAX_LENGTH}
+         * @param j      移动后这一段的起始位置
+         */
+        public OrOpt set(int i, int length, int j) {
+            this.i = i;
+            this.length = length;
+            this.j = j;
+            return this;
+        }
+
+        @Override
+        public double delta(int[] path) {
+            if (i == j) {
+                return 0;
+            }
+            int end = i + length - 1;
+            int first = path[i];
+            int last = path[end];
+            int prev = path[i - 1];
+            // 取出这一段
+            double delta = -matrix.distance(prev, first) - next(path, end);
+            if (end + 1 < path.length) {
+                delta += matrix.distance(prev, path[end + 1]);
+            }
+            // 插入到剩余路径的第j-1和第j个节点之间
+            int u = reduced(path, j - 1);
+            delta += matrix.distance(u, first);
+            if (j < path.length - length) {
+                int v = reduced(path, j);
+                delta += matrix.distance(last, v) - matrix.distance(u, v);
+            }
+            return delta;
+        }
+
+        /**
+         * 取出这一段之后，剩余路径第k个位置上的节点
+         */
+        private int reduced(int[] path, int k) {
+            return k < i ? path[k] : path[k + length];
+        }
+
+        @Override
+        public void apply(int[] path) {
+            System.arraycopy(path, i, buffer, 0, length);
+            if (j < i) {
+                System.arraycopy(path, j, path, j + length, i - j);
+            } else {
+                System.arraycopy(path, i + length, path, i, j - i);
+            }
+            System.arraycopy(buffer, 0, path, j, length);
+        }
+    }
+
+    /**
+     * 把位置i上的节点移到位置j
+     */
+    public static class Relocate extends OrOpt {
+        public Relocate(DistanceMatrix matrix) {
+            super(matrix);
+        }
+
+        public Relocate set(int i, int j) {
+            super.set(i, 1, j);
+            return this;
+        }
+    }
+
+    /**
+     * 反转位置i到j之间的节点，只在距离对称时变化量准确
+     */
+    public static class TwoOpt extends TourMove {
+        private int i;
+        private int j;
+
+        public TwoOpt(DistanceMatrix matrix) {
+            super(matrix);
+        }
+
+        public TwoOpt set(int i, int j) {
+            this.i = Math.min(i, j);
+            this.j = Math.max(i, j);
+            return this;
+        }
+
+        @Override
+        public double delta(int[] path) {
+            if (i == j) {
+                return 0;
+            }
+            int prev = path[i - 1];
+            double delta = matrix.distance(prev, path[j]) - matrix.distance(prev, path[i]);
+            if (j + 1 < path.length) {
+                delta += matrix.distance(path[i], path[j + 1]) - matrix.distance(path[j], path[j + 1]);
+            }
+            return delta;
+        }
+
+        @Override
+        public void apply(int[] path) {
+            for (int a = i, b = j; a < b; a++, b--) {
+                int temp = path[a];
+                path[a] = path[b];
+                path[b] = temp;
+            }
+        }
+    }
+}
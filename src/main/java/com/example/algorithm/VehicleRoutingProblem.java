@@ -1,41 +1,142 @@
 package com.example.algorithm;
 
-import com.example.model.DistanceResult;
 import com.example.model.UserVo;
-import com.google.gson.GsonBuilder;
 import lombok.Getter;
 import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
 
 import java.math.BigDecimal;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.function.IntConsumer;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
 
+@Slf4j
 public class VehicleRoutingProblem {
     private static final int POPULATION_SIZE = 50; // 种群大小
     private static final double MUTATION_RATE = 0.05; // 变异率
     private static final int TOURNAMENT_SIZE = 5; // 锦标赛选择的个体数量
     private static final int MAX_GENERATIONS = 100000; // 最大迭代次数
+    private static final int CHUNK_SIZE = 8; // 并行计算时每个任务生成的子代数量
+    private static final int MEMO_CAPACITY = 1 << 14; // 每个任务评估缓存的容量
+    private static final double LOCAL_SEARCH_RATE = 0.2; // 子代做局部搜索的概率
+    private static final double SAVINGS_NOISE = 0.3; // 初始种群中节约值的随机扰动幅度
+    private static final int RANDOM_INTERVAL = 4; // 初始种群中每几个个体有一个随机打乱
 
-    private static final Random random = new Random();
+    public static Map<String, Object> findBestRoute(List<UserVo> list, DistanceProvider distanceProvider) {
+        return findBestRoute(list, distanceProvider, new SolverOptions(), new SolverControl<>());
+    }
 
-    public static Map<String, Object> findBestRoute(List<UserVo> list, GeoregeoApi georegeoApi) {
-        Population population = new Population(list.size());
-        population.initialize(list);
+    /**
+     * 求解线路
+     *
+     * @param list             客户列表
+     * @param distanceProvider 距离来源
+     * @param options          求解参数
+     * @param control          终止条件，求解过程中可以从中读取当前最优方案
+     * @return bestRoute：最优方案，routs：最后一代的所有方案
+     */
+    public static Map<String, Object> findBestRoute(List<UserVo> list, DistanceProvider distanceProvider,
+                                                    SolverOptions options, SolverControl<Route> control) {
+        VrpInstance instance = VrpInstance.of(list, distanceProvider.matrix(list));
+        long seed = options.resolveSeed();
+        control.start(MAX_GENERATIONS);
+        List<Individual> individuals = new ArrayList<>();
+        long memoHits = 0;
+        long memoLookups = 0;
+        if (options.getIslands() > 1) {
+            IslandModel islandModel = new IslandModel(instance, options.getIslands(), POPULATION_SIZE, seed);
+            islandModel.run(individual -> snapshot(individual, instance, list), control);
+            for (Population island : islandModel.getIslands()) {
+                individuals.addAll(Arrays.asList(island.getIndividuals()));
+                memoHits += island.getMemoHits();
+                memoLookups += island.getMemoLookups();
+            }
+        } else {
+            Population population = new Population(POPULATION_SIZE, instance, seed, options.isParallel(), MUTATION_RATE, TOURNAMENT_SIZE);
+            population.initialize();
 
-        int generationCount = 0;
-        while (generationCount < MAX_GENERATIONS) {
-            population.evolve(georegeoApi);
-            generationCount++;
+            int generationCount = 0;
+            offer(control, generationCount, population.getFittest(), instance, list);
+            while (!control.isFinished(generationCount)) {
+                population.evolve();
+                generationCount++;
+                offer(control, generationCount, population.getFittest(), instance, list);
+            }
+            individuals.addAll(Arrays.asList(population.getIndividuals()));
+            memoHits += population.getMemoHits();
+            memoLookups += population.getMemoLookups();
         }
-        System.out.println("routs:" + new GsonBuilder().create().toJson(population.getRoutes()));
-        population.distinct();
-        Route fittestRoute = population.getFittestRoute();
+        log.info("route solver stopped, reason:{}, generations:{}, cost:{}, fitness memo hit rate:{}",
+                control.getStopReason(), control.getGeneration(), control.getBestCost(),
+                memoLookups == 0 ? 0 : (double) memoHits / memoLookups);
+        // 相同的染色体只转换一次
+        Set<Long> seen = new HashSet<>();
+        individuals.sort(Comparator.comparingDouble(individual -> individual.cost));
+        List<Route> routes = new ArrayList<>();
+        for (Individual individual : individuals) {
+            if (seen.add(individual.hash)) {
+                routes.add(toRoute(individual, instance, list, "方案" + routes.size()));
+            }
+        }
+        Route fittestRoute = control.getBest();
         Map<String, Object> result = new HashMap<>();
         result.put("bestRoute", fittestRoute);
-        result.put("routs", population.getRoutes());
+        result.put("routs", routes);
         return result;
     }
 
+    /**
+     * 个体比当前最优解更好时记录其快照
+     */
+    private static void offer(SolverControl<Route> control, int generation, Individual fittest, VrpInstance instance, List<UserVo> list) {
+        if (control.improves(fittest.cost)) {
+            control.update(generation, fittest.cost, snapshot(fittest.copy(), instance, list));
+        }
+    }
+
+    /**
+     * 不可变个体的延迟转换
+     */
+    private static Supplier<Route> snapshot(Individual individual, VrpInstance instance, List<UserVo> list) {
+        return () -> toRoute(individual, instance, list, "最优方案");
+    }
+
+    /**
+     * 将个体转换为返回结果，只在求解结束或读取当前最优解时调用
+     *
+     * @param individual 个体
+     * @param instance   问题数据
+     * @param list       客户列表
+     * @param routName   方案名称
+     * @return 路线
+     */
+    static Route toRoute(Individual individual, VrpInstance instance, List<UserVo> list, String routName) {
+        if (individual.routes < 0) {
+            individual.routes = new RouteSplitter(instance).split(individual.tour, individual.starts);
+        }
+        List<Path> paths = new ArrayList<>(individual.routes);
+        for (int r = 0; r < individual.routes; r++) {
+            List<UserVo> nodeList = new ArrayList<>();
+            BigDecimal demands = BigDecimal.ZERO;
+            long duration = 0;
+            int prev = DistanceMatrix.DEPOT;
+            for (int i = individual.starts[r]; i < individual.starts[r + 1]; i++) {
+                int slot = individual.tour[i];
+                UserVo user = list.get(slot - 1);
+                nodeList.add(user);
+                demands = demands.add(user.getDemands());
+                duration += instance.duration(prev, slot);
+                prev = slot;
+            }
+            duration += instance.duration(prev, DistanceMatrix.DEPOT);
+            paths.add(new Path(nodeList, demands, duration));
+        }
+        Route route = new Route(paths, routName);
+        route.setFitness(1 / individual.cost);
+        return route;
+    }
+
     public static class Path {
         @Getter
         private final List<UserVo> nodeList;
@@ -45,7 +146,7 @@ public class VehicleRoutingProblem {
         private final long duration;
 
         Path(List<UserVo> nodeList, BigDecimal demands, long duration) {
-            this.nodeList = nodeList.stream().sorted(Comparator.comparing(UserVo::getDistance)).collect(Collectors.toList());
+            this.nodeList = nodeList;
             this.demands = demands;
             this.duration = duration;
         }
@@ -61,7 +162,7 @@ public class VehicleRoutingProblem {
         }
     }
 
-    static class Route {
+    public static class Route {
         private final List<Path> paths; // 路径
         @Getter
         private String routName;
@@ -93,170 +194,312 @@ public class VehicleRoutingProblem {
         }
     }
 
+    /**
+     * 个体：所有客户组成的一条巨型路线(客户槽位的排列)，解码时由{@link RouteSplitter}切分成多辆车的线路
+     */
+    static class Individual {
+        /**
+         * 客户槽位的排列
+         */
+        final int[] tour;
+        /**
+         * 每辆车的线路在tour中的起始位置，starts[routes]为tour的长度
+         */
+        final int[] starts;
+        /**
+         * 车辆数，从评估缓存中取得代价时还没有切分，为-1
+         */
+        int routes;
+        /**
+         * 总行驶距离，越小越好
+         */
+        double cost;
+        /**
+         * 染色体的哈希，见{@link FitnessMemo#hash(int[])}
+         */
+        long hash;
+
+        Individual(int customers) {
+            this.tour = new int[customers];
+            this.starts = new int[customers + 1];
+        }
+
+        void copyFrom(Individual other) {
+            System.arraycopy(other.tour, 0, tour, 0, tour.length);
+            System.arraycopy(other.starts, 0, starts, 0, other.routes + 1);
+            routes = other.routes;
+            cost = other.cost;
+            hash = other.hash;
+        }
+
+        Individual copy() {
+            Individual copy = new Individual(tour.length);
+            copy.copyFrom(this);
+            return copy;
+        }
+    }
+
+    /**
+     * 种群。当前一代和下一代使用两组预先分配的个体，每代交换角色，
+     * 交叉的标记数组按任务复用，进化过程中不再分配对象(并行时ForkJoin的任务对象除外)
+     */
     static class Population {
+        /**
+         * 当前一代
+         */
         @Getter
-        private List<Route> routes;
-        @Getter
-        private Double totalFitness;
+        private Individual[] individuals;
+        /**
+         * 下一代的缓冲区
+         */
+        private Individual[] offspring;
+        private final VrpInstance instance;
+        private final boolean parallel;
+        private final double mutationRate;
+        private final int tournamentSize;
+        /**
+         * 每个子代位置一个独立的随机数流，生成结果不受线程调度影响
+         */
+        private final SplittableRandom[] randoms;
+        /**
+         * 每个任务一个切分器
+         */
+        private final RouteSplitter[] splitters;
+        /**
+         * 每个任务一个评估缓存
+         */
+        private final FitnessMemo[] memos;
+        /**
+         * 每个任务一个局部搜索
+         */
+        private final LocalSearch[] localSearches;
+        /**
+         * 每个任务一个交叉时的客户标记数组
+         */
+        private final boolean[][] used;
+        private final IntConsumer breeder = this::breed;
 
-        public Population(int locationsCount) {
-            routes = new ArrayList<>(locationsCount);
-            totalFitness = 0.0;
-            for (int i = 0; i < locationsCount; i++) {
-                routes.add(new Route(new ArrayList<>(), "方案" + i));
+        public Population(int populationSize, VrpInstance instance, long seed, boolean parallel,
+                          double mutationRate, int tournamentSize) {
+            this.instance = instance;
+            this.parallel = parallel;
+            this.mutationRate = mutationRate;
+            this.tournamentSize = tournamentSize;
+            SplittableRandom root = new SplittableRandom(seed);
+            randoms = new SplittableRandom[populationSize];
+            individuals = new Individual[populationSize];
+            offspring = new Individual[populationSize];
+            for (int i = 0; i < populationSize; i++) {
+                randoms[i] = root.split();
+                individuals[i] = new Individual(instance.getCustomers());
+                offspring[i] = new Individual(instance.getCustomers());
+            }
+            splitters = new RouteSplitter[Math.max(1, (populationSize - 1 + CHUNK_SIZE - 1) / CHUNK_SIZE)];
+            memos = new FitnessMemo[splitters.length];
+            localSearches = new LocalSearch[splitters.length];
+            used = new boolean[splitters.length][instance.getCustomers() + 1];
+            int[][] neighbors = LocalSearch.nearestNeighbors(instance, LocalSearch.DEFAULT_NEIGHBORS);
+            for (int i = 0; i < splitters.length; i++) {
+                splitters[i] = new RouteSplitter(instance);
+                memos[i] = new FitnessMemo(MEMO_CAPACITY);
+                localSearches[i] = new LocalSearch(instance, neighbors);
             }
         }
 
-        public void initialize(List<UserVo> list) { // 修正初始化方法参数
-            for (Route route : routes) {
-                List<Path> paths = new ArrayList<>();
-                List<UserVo> currentPath = new ArrayList<>();
-                BigDecimal currentCapacity = BigDecimal.ZERO;
-                long currentTime = 0;
-                double fitness = 0;
-                for (UserVo user : list) {
-                    BigDecimal demand = user.getDemands();
-                    if (currentCapacity.add(demand).compareTo(BigDecimal.valueOf(300)) <= 0 && currentTime + user.getDuration() <= 3 * 60 * 60 * 60) {
-                        currentPath.add(user);
-                        currentCapacity = currentCapacity.add(demand);
-                        currentTime += user.getDuration();
-                        fitness += user.getDistance().doubleValue();
-                    } else {
-                        paths.add(new Path(new ArrayList<>(currentPath), currentCapacity, currentTime));
-                        currentPath.clear();
-                        currentCapacity = BigDecimal.ZERO;
-                        currentTime = 0;
-                    }
+        /**
+         * 初始化：依次用节约算法、扫描算法、随机最近邻构造个体，第一个节约解和第一个扫描解不加随机，
+         * 其余节约解对节约值加随机扰动、扫描解从随机方位角开始；每{@link #RANDOM_INTERVAL}个个体中有一个随机打乱，保持多样性
+         */
+        public void initialize() {
+            TourConstructor constructor = new TourConstructor(instance);
+            for (int k = 0; k < individuals.length; k++) {
+                int[] tour = individuals[k].tour;
+                SplittableRandom random = randoms[k];
+                if (k % RANDOM_INTERVAL == RANDOM_INTERVAL - 1) {
+                    shuffle(tour, random);
+                } else if (k % 3 == 0) {
+                    constructor.savings(tour, random, k == 0 ? 0 : SAVINGS_NOISE);
+                } else if (k % 3 == 1) {
+                    constructor.sweep(tour, k == 1 ? 0 : random.nextDouble() * 2 * Math.PI);
+                } else {
+                    constructor.nearestNeighbor(tour, random);
                 }
-                if (!currentPath.isEmpty()) {
-                    paths.add(new Path(new ArrayList<>(currentPath), currentCapacity, currentTime));
+                evaluate(individuals[k], 0);
+            }
+        }
+
+        private void shuffle(int[] tour, SplittableRandom random) {
+            for (int i = 0; i < tour.length; i++) {
+                tour[i] = i + 1;
+            }
+            for (int i = tour.length - 1; i > 0; i--) {
+                int j = random.nextInt(i + 1);
+                int temp = tour[i];
+                tour[i] = tour[j];
+                tour[j] = temp;
+            }
+        }
+
+        /**
+         * 生成下一代。子代按位置分块写入缓冲区，各块可并行生成，全部完成后与当前一代交换
+         */
+        public void evolve() {
+            // 保留最优个体
+            offspring[0].copyFrom(getFittest());
+            if (parallel) {
+                IntStream.range(0, splitters.length).parallel().forEach(breeder);
+            } else {
+                for (int chunk = 0; chunk < splitters.length; chunk++) {
+                    breed(chunk);
                 }
-                route.setFitness(1 / fitness);
-                route.getPaths().addAll(paths);
             }
-            totalFitness = routes.stream().map(Route::getFitness).reduce(Double::sum).orElse(0.0);
+            Individual[] current = individuals;
+            individuals = offspring;
+            offspring = current;
         }
 
-        public void evolve(GeoregeoApi georegeoApi) {
-            for (Route route : routes) {
+        private void breed(int chunk) {
+            int from = 1 + chunk * CHUNK_SIZE;
+            int to = Math.min(from + CHUNK_SIZE, offspring.length);
+            for (int i = from; i < to; i++) {
+                SplittableRandom random = randoms[i];
                 //父本
-                Route maleParent = selectParent();
+                Individual maleParent = selectParent(random);
                 //母本
-                Route femaleParent = selectParent();
-                Route child = crossover(maleParent, femaleParent);
-                mutate(route);
-                evaluateRoute(route, georegeoApi);
-                route = child;
+                Individual femaleParent = selectParent(random);
+                Individual child = offspring[i];
+                crossover(maleParent, femaleParent, child, used[chunk], random);
+                mutate(child, random);
+                evaluate(child, chunk);
+                // 评估缓存命中说明同样的染色体已经出现过，不再重复局部搜索
+                if (child.routes >= 0 && random.nextDouble() < LOCAL_SEARCH_RATE) {
+                    localSearches[chunk].improve(child.tour, child.starts, child.routes);
+                    evaluate(child, chunk);
+                }
             }
-            totalFitness = routes.stream().map(Route::getFitness).reduce(Double::sum).orElse(0.0);
         }
 
-        private Route selectParent() {
-            List<Route> tournament = new ArrayList<>();
-            double r = random.nextDouble();
-            for (int i = 0; i < TOURNAMENT_SIZE; i++) {
-                if (r < routes.get(i).getFitness() / totalFitness) {
-                    tournament.add(routes.get(i));
+        private Individual selectParent(SplittableRandom random) {
+            Individual best = null;
+            for (int i = 0; i < tournamentSize; i++) {
+                Individual candidate = individuals[random.nextInt(individuals.length)];
+                if (best == null || candidate.cost < best.cost) {
+                    best = candidate;
                 }
             }
-            if (tournament.isEmpty()) {
-                tournament.add(routes.get(random.nextInt(routes.size())));
-            }
-            return tournament.stream().min(Comparator.comparingDouble(Route::getFitness)).get();
+            return best;
         }
 
-        public Route crossover(Route maleParent, Route femaleParent) {
-            Random random = new Random();
-            List<Path> maleParentPaths = maleParent.getPaths();
-            List<Path> femaleParentPaths = femaleParent.getPaths();
-            int crossoverRow = random.nextInt(Math.min(maleParentPaths.size(), femaleParentPaths.size()));
-            int crossoverColumn = random.nextInt(Math.min(maleParentPaths.get(0).getNodeList().size(), femaleParentPaths.get(0).getNodeList().size()));
-
-            List<Path> childGenes = new ArrayList<>();
-            for (int i = 0; i < maleParentPaths.size(); i++) {
-                List<UserVo> nodeList = new ArrayList<>();
-                BigDecimal demands = BigDecimal.ZERO;
-                long duration = 0;
-                if (i < crossoverRow) {
-                    nodeList.addAll(maleParentPaths.get(i).getNodeList());
-                    demands = maleParentPaths.get(i).getDemands();
-                    duration = maleParentPaths.get(i).getDuration();
-                } else if (i == crossoverRow) {
-                    for (int j = 0; j < Math.max(maleParentPaths.get(i).getNodeList().size(), femaleParentPaths.get(i).getNodeList().size()); j++) {
-                        if (j < crossoverColumn) {
-                            if (j < maleParentPaths.get(i).getNodeList().size()) {
-                                UserVo userVo = maleParentPaths.get(i).getNodeList().get(j);
-                                nodeList.add(userVo);
-                                demands = demands.add(userVo.getDemands());
-                                duration += userVo.getDuration();
-                            } else {
-                                UserVo userVo = femaleParentPaths.get(i).getNodeList().get(j);
-                                nodeList.add(userVo);
-                                demands = demands.add(userVo.getDemands());
-                                duration += userVo.getDuration();
-                            }
-                        } else {
-                            if (j < femaleParentPaths.get(i).getNodeList().size()) {
-                                UserVo userVo = femaleParentPaths.get(i).getNodeList().get(j);
-                                nodeList.add(userVo);
-                                demands = demands.add(userVo.getDemands());
-                                duration += userVo.getDuration();
-                            } else {
-                                UserVo userVo = maleParentPaths.get(i).getNodeList().get(j);
-                                nodeList.add(userVo);
-                                demands = demands.add(userVo.getDemands());
-                                duration += userVo.getDuration();
-                            }
-                        }
-                    }
-                } else {
-                    nodeList.addAll(femaleParentPaths.get(i).getNodeList());
-                    demands = femaleParentPaths.get(i).getDemands();
-                    duration = femaleParentPaths.get(i).getDuration();
+        /**
+         * 顺序交叉：保留父本的一段，其余客户按母本中的顺序填充
+         *
+         * @param child 写入结果的个体
+         * @param used  客户标记，调用前后全为false
+         */
+        private void crossover(Individual maleParent, Individual femaleParent, Individual child,
+                               boolean[] used, SplittableRandom random) {
+            int n = maleParent.tour.length;
+            if (n == 0) {
+                return;
+            }
+            int start = random.nextInt(n);
+            int end = start + random.nextInt(n - start);
+            for (int i = start; i <= end; i++) {
+                child.tour[i] = maleParent.tour[i];
+                used[maleParent.tour[i]] = true;
+            }
+            int position = (end + 1) % n;
+            for (int k = 0; k < n; k++) {
+                int customer = femaleParent.tour[(end + 1 + k) % n];
+                if (!used[customer]) {
+                    child.tour[position] = customer;
+                    position = (position + 1) % n;
                 }
-                childGenes.add(new Path(nodeList, demands, duration));
             }
-            return new Route(childGenes, "方案" + random.nextInt(100));
+            for (int i = start; i <= end; i++) {
+                used[maleParent.tour[i]] = false;
+            }
         }
 
         /**
          * 变异操作
          *
-         * @param route 路线
+         * @param individual 个体
+         * @param random     随机数流
          */
-        private void mutate(Route route) {
-            for (Path path : route.getPaths()) {
-                List<UserVo> nodeList = path.getNodeList();
-                if (Math.random() < MUTATION_RATE) {
-                    int index1 = random.nextInt(nodeList.size());
-                    int index2 = random.nextInt(nodeList.size());
-                    Collections.swap(nodeList, index1, index2);
+        private void mutate(Individual individual, SplittableRandom random) {
+            int[] tour = individual.tour;
+            for (int i = 0; i < tour.length; i++) {
+                if (random.nextDouble() < mutationRate) {
+                    int j = random.nextInt(tour.length);
+                    int temp = tour[i];
+                    tour[i] = tour[j];
+                    tour[j] = temp;
                 }
             }
         }
 
-        private void evaluateRoute(Route route, GeoregeoApi georegeoApi) {
-            double fitness = 0;
-            for (Path path : route.getPaths()) {
-                List<UserVo> nodeList = path.getNodeList();
-                fitness += nodeList.get(0).getDistance().doubleValue();
-                String ori = nodeList.get(0).getLongitude() + "," + nodeList.get(0).getLatitude();
-                for (UserVo userVo : nodeList) {
-                    String destination = userVo.getLongitude() + "," + userVo.getLatitude();
-                    DistanceResult distance = georegeoApi.distance(ori, destination);
-                    fitness += Double.parseDouble(distance.getDistance());
-                    ori = destination;
-                }
+        /**
+         * 解码并评估个体：按最优切分划分车辆。评估过相同的染色体时直接取缓存的代价，到输出结果时再切分
+         *
+         * @param individual 个体
+         * @param chunk      当前任务，决定使用的切分器和评估缓存
+         */
+        private void evaluate(Individual individual, int chunk) {
+            individual.hash = FitnessMemo.hash(individual.tour);
+            double cost = memos[chunk].get(individual.hash);
+            if (!Double.isNaN(cost)) {
+                individual.routes = -1;
+                individual.cost = cost;
+                return;
+            }
+            RouteSplitter splitter = splitters[chunk];
+            individual.routes = splitter.split(individual.tour, individual.starts);
+            individual.cost = splitter.getCost();
+            memos[chunk].put(individual.hash, individual.cost);
+        }
+
+        public long getMemoHits() {
+            long hits = 0;
+            for (FitnessMemo memo : memos) {
+                hits += memo.getHits();
             }
-            route.setFitness(1 / fitness);
+            return hits;
         }
 
-        public Route getFittestRoute() {
-            return routes.stream().min(Comparator.comparingDouble(Route::getFitness)).get();
+        public long getMemoLookups() {
+            long lookups = 0;
+            for (FitnessMemo memo : memos) {
+                lookups += memo.getHits() + memo.getMisses();
+            }
+            return lookups;
         }
 
-        public void distinct() {
-            routes = routes.stream().collect(Collectors.collectingAndThen(Collectors.toCollection(() -> new TreeSet<>(Comparator.comparing(Route::getFitness))), ArrayList::new));
+        /**
+         * 用迁入的个体替换最差的个体，迁入个体不比最差个体好时忽略
+         *
+         * @param migrant 迁入的个体，不会被修改
+         */
+        public void immigrate(Individual migrant) {
+            int worst = 0;
+            for (int i = 1; i < individuals.length; i++) {
+                if (individuals[i].cost > individuals[worst].cost) {
+                    worst = i;
+                }
+            }
+            if (migrant.cost < individuals[worst].cost) {
+                individuals[worst].copyFrom(migrant);
+            }
+        }
+
+        public Individual getFittest() {
+            Individual fittest = individuals[0];
+            for (Individual individual : individuals) {
+                if (individual.cost < fittest.cost) {
+                    fittest = individual;
+                }
+            }
+            return fittest;
         }
     }
 }
@@ -0,0 +1,124 @@
+package com.example.algorithm;
+
+import com.example.model.UserVo;
+
+import java.math.RoundingMode;
+import java.util.List;
+
+/**
+ * 求解器使用的问题数据，全部为基本类型数组。
+ * 槽位0为仓库，槽位i(i>=1)对应客户列表中第i-1个客户
+ */
+public class VrpInstance {
+    /**
+     * 默认货车载重
+     */
+    public static final int DEFAULT_CAPACITY = 300;
+    /**
+     * 默认单车最长行驶时间，单位：秒
+     */
+    public static final long DEFAULT_MAX_DURATION = 3 * 60 * 60 * 60;
+
+    private final int size;
+    private final int[] demands;
+    private final DistanceMatrix matrix;
+    private final int capacity;
+    private final long maxDuration;
+    /**
+     * 经度，单位：度
+     */
+    private final double[] longitudes;
+    /**
+     * 纬度，单位：度
+     */
+    private final double[] latitudes;
+
+    public VrpInstance(int[] demands, DistanceMatrix matrix, int capacity, long maxDuration,
+                       double[] longitudes, double[] latitudes) {
+        if (matrix.getSize() != demands.length || longitudes.length != demands.length || latitudes.length != demands.length) {
+            throw new IllegalArgumentException("问题数据大小不一致");
+        }
+        for (int demand : demands) {
+            if (demand > capacity) {
+                throw new IllegalArgumentException("客户需求超过货车载重: " + demand);
+            }
+        }
+        this.size = demands.length;
+        this.demands = demands;
+        this.matrix = matrix;
+        this.capacity = capacity;
+        this.maxDuration = maxDuration;
+        this.longitudes = longitudes;
+        this.latitudes = latitudes;
+    }
+
+    /**
+     * 根据客户列表构造问题数据
+     *
+     * @param customers 客户列表
+     * @param matrix    距离矩阵，槽位与客户列表对应
+     */
+    public static VrpInstance of(List<UserVo> customers, DistanceMatrix matrix) {
+        int size = customers.size() + 1;
+        int[] demands = new int[size];
+        double[] longitudes = new double[size];
+        double[] latitudes = new double[size];
+        String[] origin = GeoregeoApi.ORIGIN.split(",");
+        longitudes[DistanceMatrix.DEPOT] = Double.parseDouble(origin[0]);
+        latitudes[DistanceMatrix.DEPOT] = Double.parseDouble(origin[1]);
+        for (int i = 0; i < customers.size(); i++) {
+            UserVo user = customers.get(i);
+            // 需求按整数单位计算，小数部分向上取整
+            demands[i + 1] = user.getDemands().setScale(0, RoundingMode.CEILING).intValueExact();
+            longitudes[i + 1] = user.getLongitude().doubleValue();
+            latitudes[i + 1] = user.getLatitude().doubleValue();
+        }
+        return new VrpInstance(demands, matrix, DEFAULT_CAPACITY, DEFAULT_MAX_DURATION, longitudes, latitudes);
+    }
+
+    /**
+     * 包含仓库在内的节点数量
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * 客户数量
+     */
+    public int getCustomers() {
+        return size - 1;
+    }
+
+    public int demand(int slot) {
+        return demands[slot];
+    }
+
+    public double distance(int from, int to) {
+        return matrix.distance(from, to);
+    }
+
+    public int duration(int from, int to) {
+        return matrix.duration(from, to);
+    }
+
+    public DistanceMatrix getMatrix() {
+        return matrix;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public long getMaxDuration() {
+        return maxDuration;
+    }
+
+    public double longitude(int slot) {
+        return longitudes[slot];
+    }
+
+    public double latitude(int slot) {
+        return latitudes[slot];
+    }
+}
@@ -1,24 +1,79 @@
 package com.example.config;
 
+import com.example.algorithm.AmapDistanceProvider;
+import com.example.algorithm.DistanceMatrixStore;
+import com.example.algorithm.DistanceProvider;
+import com.example.algorithm.GeoregeoApi;
+import com.example.algorithm.HaversineDistanceProvider;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.impl.DefaultConnectionKeepAliveStrategy;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
 import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
-import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
 import org.springframework.web.client.RestTemplate;
 
+import java.nio.file.Path;
+
 @Configuration
 public class InitConfig {
+    /**
+     * 带连接池的http客户端，连接保持长连接复用，避免每次请求重新握手
+     */
+    @Bean(destroyMethod = "close")
+    public CloseableHttpClient httpClient(@Value("${amap.http.max-connections:64}") int maxConnections) {
+        PoolingHttpClientConnectionManager connectionManager = PoolingHttpClientConnectionManagerBuilder.create()
+                .setMaxConnTotal(maxConnections)
+                .setMaxConnPerRoute(maxConnections)
+                .setDefaultConnectionConfig(ConnectionConfig.custom()
+                        .setConnectTimeout(Timeout.ofMilliseconds(5000))
+                        .setSocketTimeout(Timeout.ofMilliseconds(5000))
+                        .setTimeToLive(TimeValue.ofMinutes(5))
+                        .build())
+                .build();
+        return HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setKeepAliveStrategy(DefaultConnectionKeepAliveStrategy.INSTANCE)
+                .evictIdleConnections(TimeValue.ofSeconds(30))
+                .build();
+    }
+
     @Bean
-    public RestTemplate restTemplate() {
-        SimpleClientHttpRequestFactory requestFactory = new SimpleClientHttpRequestFactory();
-        requestFactory.setConnectTimeout(5000);
-        requestFactory.setReadTimeout(5000);
+    public RestTemplate restTemplate(CloseableHttpClient httpClient) {
+        HttpComponentsClientHttpRequestFactory requestFactory = new HttpComponentsClientHttpRequestFactory(httpClient);
+        requestFactory.setConnectionRequestTimeout(5000);
         return new RestTemplate(requestFactory);
     }
 
+    /**
+     * 距离数据来源，amap：高德接口，haversine：离线估算；
+     * 配置了矩阵存储目录时，先从内存映射文件读取
+     */
+    @Bean
+    public DistanceProvider distanceProvider(GeoregeoApi georegeoApi,
+                                             @Value("${vrp.distance.provider:amap}") String provider,
+                                             @Value("${vrp.distance.detour-factor:1.3}") double detourFactor,
+                                             @Value("${vrp.distance.speed:30}") double speed,
+                                             @Value("${vrp.distance.store-dir:}") String storeDir) {
+        DistanceProvider distanceProvider = "haversine".equals(provider)
+                ? new HaversineDistanceProvider(detourFactor, speed)
+                : new AmapDistanceProvider(georegeoApi);
+        if (!storeDir.isEmpty()) {
+            return new DistanceMatrixStore(Path.of(storeDir), distanceProvider);
+        }
+        return distanceProvider;
+    }
+
     @Bean
     public RedisTemplate<String, Object> redisTemplate(RedisConnectionFactory redisConnectionFactory) {
         RedisTemplate<String, Object> redisTemplate = new RedisTemplate<>();
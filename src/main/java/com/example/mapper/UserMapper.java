@@ -3,6 +3,7 @@ package com.example.mapper;
 import com.example.model.User;
 import org.apache.ibatis.annotations.Param;
 
+import java.util.Collection;
 import java.util.List;
 
 public interface UserMapper {
@@ -25,10 +26,27 @@ public interface UserMapper {
      */
     List<User> list();
 
+    /**
+     * 按id顺序分页获取用户
+     *
+     * @param lastId   上一页最后一个用户的id
+     * @param pageSize 每页数量
+     * @return
+     */
+    List<User> listAfter(@Param("lastId") Integer lastId, @Param("pageSize") Integer pageSize);
+
     /**
      *  获取拥有经纬度的用户
      * @param pageSize
      * @return
      */
     List<User> ownerLocation(@Param("pageSize") Integer pageSize);
+
+    /**
+     * 按id获取拥有经纬度的用户
+     *
+     * @param ids 用户id
+     * @return
+     */
+    List<User> ownerLocationByIds(@Param("ids") Collection<Integer> ids);
 }
\ No newline at end of file
@@ -1,9 +1,39 @@
 package com.example.service;
 
+import java.math.BigDecimal;
 import java.util.Map;
 
 public interface UserService {
     void updateLocation();
 
     Map<String, Object> planningRoutes();
+
+    /**
+     * 规划线路
+     *
+     * @param timeLimit 求解时间上限，单位：秒，为空时使用配置的值
+     * @param engine    求解器名称，为空时使用配置的值
+     */
+    Map<String, Object> planningRoutes(Long timeLimit, String engine);
+
+    /**
+     * 按客户的实际需求量规划线路
+     *
+     * @param timeLimit 求解时间上限，单位：秒，为空时使用配置的值
+     * @param engine    求解器名称，为空时使用配置的值
+     * @param demands   用户id到需求量，为空时读取配置数量的有经纬度客户，需求量随机生成
+     */
+    Map<String, Object> planningRoutes(Long timeLimit, String engine, Map<Integer, BigDecimal> demands);
+
+    /**
+     * 开始预热距离缓存
+     *
+     * @return 是否开始了新的预热
+     */
+    boolean warmUp();
+
+    /**
+     * 距离缓存预热的进度
+     */
+    Map<String, Object> warmUpStatus();
 }
@@ -0,0 +1,177 @@
+package com.example.service.impl;
+
+import cn.hutool.core.bean.BeanUtil;
+import com.example.algorithm.*;
+import com.example.mapper.UserMapper;
+import com.example.model.DistanceResult;
+import com.example.model.User;
+import com.example.model.UserVo;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 距离缓存预热。
+ * 读取有经纬度的客户，找出缓存中缺失的仓库/客户距离，在后台以有限并发补齐，
+ * 使部署后第一次规划线路不需要等待高德接口
+ */
+@Slf4j
+@Service
+public class DistanceWarmUp {
+    public enum State {
+        IDLE, RUNNING, READY, FAILED
+    }
+
+    @Resource
+    private UserMapper userMapper;
+    @Autowired
+    private GeoregeoApi georegeoApi;
+    @Autowired
+    private AmapRequestExecutor requestExecutor;
+
+    @Value("${vrp.warm-up.enabled:false}")
+    private boolean enabled;
+    @Value("${vrp.warm-up.customers:10}")
+    private int customers;
+    @Value("${vrp.warm-up.concurrency:4}")
+    private int concurrency;
+
+    private final AtomicReference<State> state = new AtomicReference<>(State.IDLE);
+    private final AtomicInteger totalPairs = new AtomicInteger();
+    private final AtomicInteger missingPairs = new AtomicInteger();
+    private final AtomicInteger filledPairs = new AtomicInteger();
+    private volatile LocalDateTime startedAt;
+    private volatile LocalDateTime finishedAt;
+    private volatile String error;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onReady() {
+        if (enabled) {
+            start();
+        }
+    }
+
+    @Scheduled(cron = "${vrp.warm-up.cron:-}")
+    public void onSchedule() {
+        start();
+    }
+
+    /**
+     * 在后台开始预热，正在预热时忽略
+     *
+     * @return 是否开始了新的预热
+     */
+    public boolean start() {
+        State current = state.get();
+        if (current == State.RUNNING || !state.compareAndSet(current, State.RUNNING)) {
+            return false;
+        }
+        Thread thread = new Thread(this::run, "distance-warm-up");
+        thread.setDaemon(true);
+        thread.start();
+        return true;
+    }
+
+    public Map<String, Object> status() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("state", state.get());
+        status.put("ready", state.get() == State.READY);
+        status.put("totalPairs", totalPairs.get());
+        status.put("missingPairs", missingPairs.get());
+        status.put("filledPairs", filledPairs.get());
+        status.put("startedAt", startedAt);
+        status.put("finishedAt", finishedAt);
+        status.put("error", error);
+        return status;
+    }
+
+    private void run() {
+        startedAt = LocalDateTime.now();
+        finishedAt = null;
+        error = null;
+        filledPairs.set(0);
+        try {
+            warmUp();
+            state.set(State.READY);
+            log.info("distance warm-up finished, pairs:{}, filled:{}", totalPairs.get(), filledPairs.get());
+        } catch (RuntimeException e) {
+            error = e.getMessage();
+            state.set(State.FAILED);
+            log.warn("distance warm-up failed", e);
+        } finally {
+            finishedAt = LocalDateTime.now();
+        }
+    }
+
+    private void warmUp() {
+        List<User> userList = userMapper.ownerLocation(customers);
+        List<UserVo> userVos = BeanUtil.copyToList(userList, UserVo.class);
+        List<String> points = new ArrayList<>(userVos.size() + 1);
+        points.add(GeoregeoApi.ORIGIN);
+        for (UserVo userVo : userVos) {
+            points.add(DistanceMatrix.location(userVo));
+        }
+        int size = points.size();
+        long[] cached = georegeoApi.cachedMatrix(points);
+        totalPairs.set(size * (size - 1));
+        List<List<Integer>> columns = new ArrayList<>(size);
+        int missing = 0;
+        for (int to = 0; to < size; to++) {
+            List<Integer> origins = new ArrayList<>();
+            for (int from = 0; from < size; from++) {
+                if (cached[from * size + to] == DistanceCodec.MISSING) {
+                    origins.add(from);
+                }
+            }
+            columns.add(origins);
+            missing += origins.size();
+        }
+        missingPairs.set(missing);
+        log.info("distance warm-up started, customers:{}, missing pairs:{}", userVos.size(), missing);
+
+        List<CompletableFuture<Integer>> futures = new ArrayList<>();
+        Semaphore permits = new Semaphore(concurrency);
+        for (int to = 0; to < size; to++) {
+            List<Integer> origins = columns.get(to);
+            for (int start = 0; start < origins.size(); start += GeoregeoApi.MAX_ORIGINS) {
+                List<Integer> batch = origins.subList(start, Math.min(start + GeoregeoApi.MAX_ORIGINS, origins.size()));
+                int destination = to;
+                permits.acquireUninterruptibly();
+                futures.add(requestExecutor.submit(AmapPriority.BACKGROUND, () -> fill(points, batch, destination))
+                        .whenComplete((filled, e) -> permits.release()));
+            }
+        }
+        for (CompletableFuture<Integer> future : futures) {
+            future.join();
+        }
+    }
+
+    /**
+     * 获取一组起点到同一终点的距离并写入缓存
+     *
+     * @return 获取到的距离数量
+     */
+    private int fill(List<String> points, List<Integer> origins, int to) {
+        List<String> locations = new ArrayList<>(origins.size());
+        for (int from : origins) {
+            locations.add(points.get(from));
+        }
+        List<DistanceResult> results = georegeoApi.distances(locations, points.get(to));
+        georegeoApi.cacheDistances(locations, points.get(to), results);
+        int filled = (int) results.stream().filter(Objects::nonNull).count();
+        filledPairs.addAndGet(filled);
+        return filled;
+    }
+}
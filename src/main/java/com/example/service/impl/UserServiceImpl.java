@@ -1,8 +1,15 @@
 package com.example.service.impl;
 
 import cn.hutool.core.bean.BeanUtil;
-import cn.hutool.core.util.NumberUtil;
+import cn.hutool.core.util.RandomUtil;
+import cn.hutool.core.util.StrUtil;
+import com.example.algorithm.AmapPriority;
+import com.example.algorithm.AmapRequestExecutor;
+import com.example.algorithm.DistanceProvider;
 import com.example.algorithm.GeoregeoApi;
+import com.example.algorithm.SolverControl;
+import com.example.algorithm.SolverOptions;
+import com.example.algorithm.Solver;
 import com.example.algorithm.VehicleRoutingProblem;
 import com.example.mapper.UserMapper;
 import com.example.model.DistanceResult;
@@ -12,51 +19,216 @@ import com.example.model.UserVo;
 import com.example.service.UserService;
 import jakarta.annotation.Resource;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.ibatis.session.ExecutorType;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 @Slf4j
 @Service
 public class UserServiceImpl implements UserService {
+    /**
+     * 更新位置时每页读取的用户数量
+     */
+    private static final int PAGE_SIZE = 500;
+    /**
+     * 批量更新时每批的语句数量
+     */
+    private static final int BATCH_SIZE = 100;
+
     @Resource
     private UserMapper userMapper;
+    @Resource
+    private SqlSessionFactory sqlSessionFactory;
     @Autowired
     private GeoregeoApi georegeoApi;
+    @Autowired
+    private AmapRequestExecutor requestExecutor;
+    @Autowired
+    private DistanceProvider distanceProvider;
+    @Autowired
+    private DistanceWarmUp distanceWarmUp;
+    @Autowired
+    private List<Solver> solvers;
+
+    @Value("${vrp.solver.parallel:true}")
+    private boolean parallel;
+    /**
+     * 随机数种子，不配置时每次求解使用不同的种子
+     */
+    @Value("${vrp.solver.seed:}")
+    private Long seed;
+    @Value("${vrp.solver.islands:0}")
+    private int islands;
+    @Value("${vrp.solver.time-limit:0s}")
+    private Duration timeLimit;
+    @Value("${vrp.solver.stagnation:0}")
+    private int stagnation;
+    @Value("${vrp.solver.engine:ga}")
+    private String engine;
+    /**
+     * 不指定客户时规划的有经纬度客户数量
+     */
+    @Value("${vrp.solver.customers:10}")
+    private int customers;
 
     @Override
     public void updateLocation() {
-        for (User user : userMapper.list()) {
-            GeocodesResult geocodesResult = georegeoApi.geocode(user.getAddressDetail());
-            if (geocodesResult != null) {
-                User record = new User();
-                record.setId(user.getId());
-                record.setProvince(geocodesResult.getProvince());
-                record.setCity(geocodesResult.getCity());
-                record.setArea(geocodesResult.getDistrict());
-                String[] location = geocodesResult.getLocation().split(",");
-                record.setLongitude(new BigDecimal(location[0]));
-                record.setLatitude(new BigDecimal(location[1]));
-                record.setAddressDetail(geocodesResult.getFormatted_address());
-                DistanceResult distanceResult = georegeoApi.defaultDistance(user.getLongitude() + "," + user.getLatitude());
-                record.setDistance(new BigDecimal(distanceResult.getDistance()));
-                record.setDuration(Long.valueOf(distanceResult.getDuration()));
-                userMapper.updateByPrimaryKeySelective(record);
+        int lastId = 0;
+        int updated = 0;
+        while (true) {
+            List<User> users = userMapper.listAfter(lastId, PAGE_SIZE);
+            if (users.isEmpty()) {
+                break;
+            }
+            List<CompletableFuture<User>> futures = new ArrayList<>(users.size());
+            for (User user : users) {
+                futures.add(requestExecutor.submit(AmapPriority.BACKGROUND, () -> locate(user)));
+            }
+            List<User> records = new ArrayList<>(users.size());
+            for (CompletableFuture<User> future : futures) {
+                User record = future.join();
+                if (record != null) {
+                    records.add(record);
+                }
+            }
+            updateBatch(records);
+            updated += records.size();
+            lastId = users.get(users.size() - 1).getId();
+            log.info("updateLocation progress, lastId:{}, updated:{}", lastId, updated);
+        }
+    }
+
+    /**
+     * 使用批量执行器分批更新
+     *
+     * @param records 待更新的记录
+     */
+    private void updateBatch(List<User> records) {
+        if (records.isEmpty()) {
+            return;
+        }
+        try (SqlSession session = sqlSessionFactory.openSession(ExecutorType.BATCH, false)) {
+            UserMapper mapper = session.getMapper(UserMapper.class);
+            for (int i = 0; i < records.size(); i++) {
+                mapper.updateByPrimaryKeySelective(records.get(i));
+                if ((i + 1) % BATCH_SIZE == 0) {
+                    session.flushStatements();
+                }
             }
+            session.flushStatements();
+            session.commit();
+        }
+    }
+
+    /**
+     * 获取用户的地理编码及到仓库的距离
+     *
+     * @param user 用户
+     * @return 待更新的记录，地址无法解析时返回null，获取距离失败时不包含距离和时长
+     */
+    private User locate(User user) {
+        GeocodesResult geocodesResult;
+        try {
+            geocodesResult = georegeoApi.geocode(user.getAddressDetail());
+        } catch (RuntimeException e) {
+            log.warn("geocode failed, id:{}, address:{}", user.getId(), user.getAddressDetail(), e);
+            return null;
+        }
+        if (geocodesResult == null) {
+            return null;
+        }
+        User record = new User();
+        record.setId(user.getId());
+        record.setProvince(geocodesResult.getProvince());
+        record.setCity(geocodesResult.getCity());
+        record.setArea(geocodesResult.getDistrict());
+        String[] location = geocodesResult.getLocation().split(",");
+        record.setLongitude(new BigDecimal(location[0]));
+        record.setLatitude(new BigDecimal(location[1]));
+        record.setAddressDetail(geocodesResult.getFormatted_address());
+        DistanceResult distanceResult;
+        try {
+            distanceResult = georegeoApi.defaultDistance(geocodesResult.getLocation());
+        } catch (RuntimeException e) {
+            // 地理编码已经成功，距离和时长留空
+            log.warn("default distance failed, id:{}, location:{}", user.getId(), geocodesResult.getLocation(), e);
+            distanceResult = null;
+        }
+        if (distanceResult != null) {
+            record.setDistance(new BigDecimal(distanceResult.getDistance()));
+            record.setDuration(Long.valueOf(distanceResult.getDuration()));
         }
+        return record;
     }
 
     @Override
     public Map<String, Object> planningRoutes() {
-        List<User> userList = userMapper.ownerLocation(10);
-        List<UserVo> userVos = BeanUtil.copyToList(userList, UserVo.class);
-        int[] demands = NumberUtil.generateRandomNumber(1, 150, 10);
-        for (int i = 0; i < userVos.size(); i++) {
-            userVos.get(i).setDemands(new BigDecimal(demands[i]));
+        return planningRoutes(null, null);
+    }
+
+    @Override
+    public Map<String, Object> planningRoutes(Long timeLimit, String engine) {
+        return planningRoutes(timeLimit, engine, null);
+    }
+
+    @Override
+    public Map<String, Object> planningRoutes(Long timeLimit, String engine, Map<Integer, BigDecimal> demands) {
+        Solver solver = solver(StrUtil.isBlank(engine) ? this.engine : engine);
+        List<UserVo> userVos;
+        if (demands == null || demands.isEmpty()) {
+            List<User> userList = userMapper.ownerLocation(customers);
+            userVos = BeanUtil.copyToList(userList, UserVo.class);
+            // 没有订单数据时需求量随机生成
+            for (UserVo userVo : userVos) {
+                userVo.setDemands(new BigDecimal(RandomUtil.randomInt(1, 150)));
+            }
+        } else {
+            List<User> userList = userMapper.ownerLocationByIds(demands.keySet());
+            userVos = BeanUtil.copyToList(userList, UserVo.class);
+            for (UserVo userVo : userVos) {
+                userVo.setDemands(demands.get(userVo.getId()));
+            }
+            if (userVos.size() < demands.size()) {
+                log.warn("planningRoutes skipped customers without location, requested:{}, located:{}",
+                        demands.size(), userVos.size());
+            }
         }
-        return VehicleRoutingProblem.findBestRoute(userVos, georegeoApi);
+        SolverOptions options = new SolverOptions();
+        options.setSeed(seed);
+        options.setParallel(parallel);
+        options.setIslands(islands);
+        SolverControl<VehicleRoutingProblem.Route> control = new SolverControl<>();
+        control.setTimeLimit(timeLimit != null ? timeLimit * 1000 : this.timeLimit.toMillis());
+        control.setStagnation(stagnation);
+        return solver.solve(userVos, distanceProvider, options, control);
+    }
+
+    private Solver solver(String name) {
+        for (Solver solver : solvers) {
+            if (solver.getName().equals(name)) {
+                return solver;
+            }
+        }
+        throw new IllegalArgumentException("未知的求解器: " + name);
+    }
+
+    @Override
+    public boolean warmUp() {
+        return distanceWarmUp.start();
+    }
+
+    @Override
+    public Map<String, Object> warmUpStatus() {
+        return distanceWarmUp.status();
     }
 }
@@ -2,14 +2,19 @@ package com.example.web;
 
 import com.example.service.UserService;
 import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.math.BigDecimal;
 import java.util.Map;
 
 @Slf4j
@@ -35,9 +40,10 @@ public class UserController {
 
     @Operation(summary = "规划线路", description = "规划线路")
     @GetMapping("/planningRoutes")
-    public String planningRoutes() {
+    public String planningRoutes(@Parameter(description = "求解时间上限，单位：秒") @RequestParam(required = false) Long timeLimit,
+                                 @Parameter(description = "求解器：ga、alns、tabu、cluster") @RequestParam(required = false) String engine) {
         try {
-            return userService.planningRoutes().get("bestRoute").toString();
+            return userService.planningRoutes(timeLimit, engine).get("bestRoute").toString();
         } catch (Exception e) {
             e.printStackTrace();
             return e.getMessage();
@@ -46,8 +52,32 @@ public class UserController {
 
     @Operation(summary = "规划线路", description = "规划线路")
     @GetMapping("/planningRoute")
-    public  Map<String, Object> planningRoute() {
+    public  Map<String, Object> planningRoute(@Parameter(description = "求解时间上限，单位：秒") @RequestParam(required = false) Long timeLimit,
+                                              @Parameter(description = "求解器：ga、alns、tabu、cluster") @RequestParam(required = false) String engine) {
         log.info("planningRoute");
-        return userService.planningRoutes();
+        return userService.planningRoutes(timeLimit, engine);
+    }
+
+    @Operation(summary = "按需求量规划线路", description = "按提交的用户id和需求量规划线路，没有经纬度的用户会被跳过")
+    @PostMapping("/planningRoute")
+    public Map<String, Object> planningRoute(@Parameter(description = "求解时间上限，单位：秒") @RequestParam(required = false) Long timeLimit,
+                                             @Parameter(description = "求解器：ga、alns、tabu、cluster") @RequestParam(required = false) String engine,
+                                             @Parameter(description = "用户id到需求量") @RequestBody Map<Integer, BigDecimal> demands) {
+        log.info("planningRoute, customers:{}", demands.size());
+        return userService.planningRoutes(timeLimit, engine, demands);
+    }
+
+    @Operation(summary = "预热距离缓存", description = "在后台补齐仓库与客户之间缺失的距离缓存")
+    @PostMapping("/warmUp")
+    public Map<String, Object> warmUp() {
+        log.info("warmUp");
+        userService.warmUp();
+        return userService.warmUpStatus();
+    }
+
+    @Operation(summary = "预热进度", description = "距离缓存预热的进度")
+    @GetMapping("/warmUp")
+    public Map<String, Object> warmUpStatus() {
+        return userService.warmUpStatus();
     }
 }
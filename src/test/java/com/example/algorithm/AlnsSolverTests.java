@@ -0,0 +1,77 @@
+package com.example.algorithm;
+
+import com.example.model.UserVo;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AlnsSolverTests {
+    private static final int CUSTOMERS = 60;
+
+    @Test
+    void solve() {
+        Random random = new Random(9);
+        List<UserVo> customers = new ArrayList<>(CUSTOMERS);
+        for (int i = 0; i < CUSTOMERS; i++) {
+            UserVo user = new UserVo();
+            user.setId(i);
+            user.setLongitude(BigDecimal.valueOf(106.5 + random.nextInt(200000) / 1e6));
+            user.setLatitude(BigDecimal.valueOf(26.6 + random.nextInt(200000) / 1e6));
+            user.setDemands(BigDecimal.valueOf(1 + random.nextInt(60)));
+            customers.add(user);
+        }
+        DistanceProvider provider = new HaversineDistanceProvider(1.3, 36);
+        SolverOptions options = new SolverOptions();
+        options.setSeed(9L);
+        // 第一次记录的解是构造出的初始解
+        double[] initial = {Double.NaN};
+        SolverControl<VehicleRoutingProblem.Route> control = new SolverControl<VehicleRoutingProblem.Route>() {
+            @Override
+            public synchronized void update(int generation, double cost, Supplier<VehicleRoutingProblem.Route> solution) {
+                if (Double.isNaN(initial[0])) {
+                    initial[0] = cost;
+                }
+                super.update(generation, cost, solution);
+            }
+        };
+        control.setMaxGenerations(3000);
+        new AlnsSolver().solve(customers, provider, options, control);
+
+        // 每个客户恰好出现一次，每辆车不超载，重新计算的距离与报告的一致
+        DistanceMatrix matrix = provider.matrix(customers);
+        Map<UserVo, Integer> slots = new IdentityHashMap<>();
+        for (int i = 0; i < CUSTOMERS; i++) {
+            slots.put(customers.get(i), i + 1);
+        }
+        int[] visits = new int[CUSTOMERS + 1];
+        double cost = 0;
+        for (VehicleRoutingProblem.Path path : control.getBest().getPaths()) {
+            int load = 0;
+            int prev = DistanceMatrix.DEPOT;
+            for (UserVo user : path.getNodeList()) {
+                int slot = slots.get(user);
+                visits[slot]++;
+                load += user.getDemands().intValue();
+                cost += matrix.distance(prev, slot);
+                prev = slot;
+            }
+            cost += matrix.distance(prev, DistanceMatrix.DEPOT);
+            assertTrue(load <= VrpInstance.DEFAULT_CAPACITY);
+        }
+        for (int slot = 1; slot <= CUSTOMERS; slot++) {
+            assertEquals(1, visits[slot]);
+        }
+        assertEquals(control.getBestCost(), cost, 1e-6);
+        assertTrue(control.getBestCost() <= initial[0]);
+        assertEquals(SolverControl.StopReason.GENERATIONS, control.getStopReason());
+    }
+}
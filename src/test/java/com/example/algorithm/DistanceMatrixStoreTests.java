@@ -0,0 +1,202 @@
+package com.example.algorithm;
+
+import com.example.model.UserVo;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DistanceMatrixStoreTests {
+    private static final HaversineDistanceProvider HAVERSINE = new HaversineDistanceProvider(1.3, 36);
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void fetchesOnlyMissingPairs() throws IOException {
+        Random random = new Random(1);
+        List<UserVo> customers = customers(random, 5);
+        CountingProvider delegate = new CountingProvider();
+        DistanceMatrixStore store = new DistanceMatrixStore(directory, delegate);
+
+        // 仓库加5个客户，对角线以外的点对都要获取
+        check(customers, store.matrix(customers));
+        assertEquals(6 * 6 - 6, delegate.pairs);
+        store.matrix(customers);
+        assertEquals(1, delegate.calls);
+
+        // 追加2个客户，只获取与新客户有关的点对
+        List<UserVo> more = new ArrayList<>(customers);
+        more.addAll(customers(random, 2));
+        check(more, store.matrix(more));
+        assertEquals(30 + 8 * 8 - 6 * 6 - 2, delegate.pairs);
+        assertEquals(1, files());
+
+        // 重新打开目录，按指纹找到文件，不再获取
+        DistanceMatrixStore reopened = new DistanceMatrixStore(directory, delegate);
+        check(more, reopened.matrix(more));
+        check(customers, reopened.matrix(customers));
+        assertEquals(2, delegate.calls);
+    }
+
+    @Test
+    void grow() throws IOException {
+        Random random = new Random(2);
+        List<UserVo> customers = customers(random, 40);
+        CountingProvider delegate = new CountingProvider();
+        DistanceMatrixStore store = new DistanceMatrixStore(directory, delegate);
+        store.matrix(customers);
+
+        // 超过初始容量，换成更大的文件，旧文件删除，已有距离复制过去
+        List<UserVo> more = new ArrayList<>(customers);
+        more.addAll(customers(random, 40));
+        int before = delegate.pairs;
+        check(more, store.matrix(more));
+        assertEquals(81 * 81 - 41 * 41 - 40, delegate.pairs - before);
+        assertEquals(1, files());
+        check(customers, new DistanceMatrixStore(directory, delegate).matrix(customers));
+        assertEquals(2, delegate.calls);
+    }
+
+    @Test
+    void unknownAfterFailure() throws IOException {
+        Random random = new Random(3);
+        List<UserVo> customers = customers(random, 5);
+        CountingProvider delegate = new CountingProvider();
+        DistanceMatrixStore store = new DistanceMatrixStore(directory, delegate);
+        store.matrix(customers);
+
+        // 获取失败时新坐标已经追加，距离保持未知，下次只重新获取这些点对
+        List<UserVo> more = new ArrayList<>(customers);
+        more.addAll(customers(random, 1));
+        delegate.fail = true;
+        assertThrows(IllegalStateException.class, () -> store.matrix(more));
+        delegate.fail = false;
+        int before = delegate.pairs;
+        check(more, new DistanceMatrixStore(directory, delegate).matrix(more));
+        assertEquals(7 * 7 - 6 * 6 - 1, delegate.pairs - before);
+    }
+
+    @Test
+    void reopenAfterEviction() throws IOException {
+        Random random = new Random(4);
+        CountingProvider delegate = new CountingProvider();
+        DistanceMatrixStore store = new DistanceMatrixStore(directory, delegate);
+        List<List<UserVo>> sets = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            // 除仓库外互不重叠的坐标集合各自一个文件，超过4个时最早的文件被释放
+            sets.add(customers(random, 3));
+            store.matrix(sets.get(i));
+        }
+        assertEquals(6, files());
+        for (List<UserVo> set : sets) {
+            check(set, store.matrix(set));
+        }
+        assertEquals(6, delegate.calls);
+    }
+
+    @Test
+    void fetchesWithoutLock() throws Exception {
+        Random random = new Random(5);
+        List<UserVo> slow = customers(random, 3);
+        List<UserVo> fast = customers(random, 3);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        DistanceMatrixStore store = new DistanceMatrixStore(directory, new CountingProvider() {
+            @Override
+            public DistanceMatrix matrix(List<UserVo> customers, boolean[] required) {
+                if (customers == slow) {
+                    started.countDown();
+                    await(release);
+                }
+                return super.matrix(customers, required);
+            }
+        });
+        CompletableFuture<DistanceMatrix> pending = CompletableFuture.supplyAsync(() -> store.matrix(slow));
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+
+        // 前一个请求还在获取距离，另一组坐标不需要等待
+        check(fast, store.matrix(fast));
+        assertFalse(pending.isDone());
+        release.countDown();
+        check(slow, pending.get(10, TimeUnit.SECONDS));
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void check(List<UserVo> customers, DistanceMatrix matrix) {
+        DistanceMatrix expected = HAVERSINE.matrix(customers);
+        for (int from = 0; from <= customers.size(); from++) {
+            for (int to = 0; to <= customers.size(); to++) {
+                assertEquals(Math.round(expected.distance(from, to)), matrix.distance(from, to));
+                assertEquals(expected.duration(from, to), matrix.duration(from, to));
+            }
+        }
+    }
+
+    private long files() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> file.toString().endsWith(".dmx")).count();
+        }
+    }
+
+    private static List<UserVo> customers(Random random, int count) {
+        List<UserVo> customers = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            UserVo user = new UserVo();
+            user.setLongitude(BigDecimal.valueOf(106.5 + random.nextInt(300000) / 1e6));
+            user.setLatitude(BigDecimal.valueOf(26.5 + random.nextInt(300000) / 1e6));
+            customers.add(user);
+        }
+        return customers;
+    }
+
+    /**
+     * 按直线距离计算，记录请求的点对数量
+     */
+    private static class CountingProvider implements DistanceProvider {
+        volatile int calls;
+        volatile int pairs;
+        volatile boolean fail;
+
+        @Override
+        public DistanceMatrix matrix(List<UserVo> customers) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public synchronized DistanceMatrix matrix(List<UserVo> customers, boolean[] required) {
+            if (fail) {
+                throw new IllegalStateException("获取距离失败");
+            }
+            calls++;
+            for (boolean pair : required) {
+                if (pair) {
+                    pairs++;
+                }
+            }
+            return HAVERSINE.matrix(customers);
+        }
+    }
+}
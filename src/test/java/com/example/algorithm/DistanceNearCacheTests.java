@@ -0,0 +1,56 @@
+package com.example.algorithm;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class DistanceNearCacheTests {
+
+    @Test
+    void evictsLeastRecentlyUsed() {
+        DistanceNearCache cache = new DistanceNearCache(2, Duration.ofHours(1));
+        cache.put("a", 1, 10);
+        cache.put("b", 2, 20);
+        // 读取a后b成为最久未使用的条目
+        assertEquals(1, cache.get("a").getDistance());
+        cache.put("c", 3, 30);
+
+        assertEquals(2, cache.size());
+        assertNull(cache.get("b"));
+        assertEquals(10, cache.get("a").getDuration());
+        assertEquals(3, cache.get("c").getDistance());
+        assertEquals(3, cache.getHits());
+        assertEquals(1, cache.getMisses());
+        assertEquals(1, cache.getEvictions());
+    }
+
+    @Test
+    void expires() throws InterruptedException {
+        DistanceNearCache cache = new DistanceNearCache(10, Duration.ofMillis(50));
+        cache.put("a", 1, 10);
+        assertNotNull(cache.get("a"));
+        Thread.sleep(100);
+
+        // 过期的条目读取时移除，计为未命中和淘汰
+        assertNull(cache.get("a"));
+        assertEquals(0, cache.size());
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+        assertEquals(1, cache.getEvictions());
+    }
+
+    @Test
+    void putReplaces() {
+        DistanceNearCache cache = new DistanceNearCache(2, Duration.ofHours(1));
+        cache.put("a", 1, 10);
+        cache.put("a", 2, 20);
+
+        assertEquals(1, cache.size());
+        assertEquals(2, cache.get("a").getDistance());
+        assertEquals(0, cache.getEvictions());
+    }
+}
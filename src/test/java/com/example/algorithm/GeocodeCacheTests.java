@@ -0,0 +1,69 @@
+package com.example.algorithm;
+
+import com.example.model.GeocodesResult;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class GeocodeCacheTests {
+
+    @Test
+    void lookup() {
+        Map<String, String> redis = new HashMap<>();
+        Map<String, Duration> ttls = new HashMap<>();
+        GeocodeCache cache = new GeocodeCache(redis(redis, ttls), Duration.ofDays(90), Duration.ofDays(1));
+
+        GeocodeCache.Lookup miss = cache.lookup("贵阳市 观山湖区");
+        assertFalse(miss.isCached());
+        assertFalse(miss.isNegative());
+        assertNull(miss.getResult());
+
+        // 无法解析的地址也缓存，过期时间较短
+        cache.put("贵阳市 观山湖区", null);
+        GeocodeCache.Lookup negative = cache.lookup("贵阳市观山湖区");
+        assertTrue(negative.isCached());
+        assertTrue(negative.isNegative());
+        assertNull(negative.getResult());
+        assertEquals(Duration.ofDays(1), ttls.get("vrp:geocode:贵阳市观山湖区"));
+
+        GeocodesResult result = new GeocodesResult();
+        result.setLocation("106.642827,26.617702");
+        cache.put("贵阳市南明区", result);
+        GeocodeCache.Lookup hit = cache.lookup("贵阳市南明区");
+        assertTrue(hit.isCached());
+        assertFalse(hit.isNegative());
+        assertEquals("106.642827,26.617702", hit.getResult().getLocation());
+        assertEquals(Duration.ofDays(90), ttls.get("vrp:geocode:贵阳市南明区"));
+    }
+
+    /**
+     * 用Map代替redis的字符串读写
+     */
+    @SuppressWarnings("unchecked")
+    private static StringRedisTemplate redis(Map<String, String> values, Map<String, Duration> ttls) {
+        ValueOperations<String, String> operations = mock(ValueOperations.class);
+        when(operations.get(any())).thenAnswer(invocation -> values.get(invocation.<String>getArgument(0)));
+        doAnswer(invocation -> {
+            values.put(invocation.getArgument(0), invocation.getArgument(1));
+            ttls.put(invocation.getArgument(0), invocation.getArgument(2));
+            return null;
+        }).when(operations).set(anyString(), anyString(), any(Duration.class));
+        StringRedisTemplate template = mock(StringRedisTemplate.class);
+        when(template.opsForValue()).thenReturn(operations);
+        return template;
+    }
+}
@@ -0,0 +1,33 @@
+package com.example.algorithm;
+
+import com.example.model.UserVo;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class HaversineDistanceProviderTests {
+
+    @Test
+    void matrix() {
+        UserVo user = new UserVo();
+        user.setLongitude(new BigDecimal("106.642827"));
+        user.setLatitude(new BigDecimal("26.617702"));
+        DistanceMatrix matrix = new HaversineDistanceProvider(1.3, 36).matrix(List.of(user));
+
+        double straight = HaversineDistanceProvider.haversine(106.623069, 26.677932, 106.642827, 26.617702);
+        assertEquals(0, matrix.distance(0, 0));
+        assertEquals(straight * 1.3, matrix.distance(0, 1), 1e-6);
+        assertEquals(matrix.distance(0, 1), matrix.distance(1, 0), 1e-6);
+        // 36千米/小时即10米/秒
+        assertEquals(Math.round(straight * 1.3 / 10), matrix.duration(0, 1));
+    }
+
+    @Test
+    void haversine() {
+        // 经线上1度约111.2千米
+        assertEquals(111195, HaversineDistanceProvider.haversine(106, 26, 106, 27), 10);
+    }
+}
@@ -0,0 +1,154 @@
+package com.example.algorithm;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+class KdTreeTests {
+    private static final int TRIALS = 200;
+
+    @Test
+    void nearest() {
+        SplittableRandom random = new SplittableRandom(7);
+        for (int trial = 0; trial < TRIALS; trial++) {
+            Points points = new Points(random, trial);
+            boolean[] excluded = null;
+            if (trial % 2 == 0) {
+                excluded = new boolean[points.n + 1];
+                for (int i = 1; i <= points.n; i++) {
+                    excluded[i] = random.nextInt(4) == 0;
+                }
+            }
+            double longitude = points.longitude(random);
+            double latitude = points.latitude(random);
+            int k = 1 + random.nextInt(10);
+            int[] result = new int[k];
+            double[] distances = new double[k];
+            int count = points.tree.nearest(longitude, latitude, k, excluded, result, distances);
+
+            double[] expected = new double[points.n];
+            int m = 0;
+            for (int i = 1; i <= points.n; i++) {
+                if (excluded == null || !excluded[i]) {
+                    expected[m++] = points.squared(i, longitude, latitude);
+                }
+            }
+            Arrays.sort(expected, 0, m);
+            assertEquals(Math.min(k, m), count);
+            for (int i = 0; i < count; i++) {
+                // 距离相同的点顺序不定，只比较距离
+                assertEquals(expected[i], distances[i], 1e-6);
+                assertEquals(distances[i], points.squared(result[i], longitude, latitude), 1e-6);
+                if (excluded != null) {
+                    assertFalse(excluded[result[i]]);
+                }
+            }
+        }
+    }
+
+    @Test
+    void withinRadius() {
+        SplittableRandom random = new SplittableRandom(11);
+        for (int trial = 0; trial < TRIALS; trial++) {
+            Points points = new Points(random, trial);
+            double longitude = points.longitude(random);
+            double latitude = points.latitude(random);
+            double radius = random.nextDouble() * 5000;
+            int[] result = new int[points.n];
+            int count = points.tree.withinRadius(longitude, latitude, radius, result);
+
+            int[] expected = new int[points.n];
+            int m = 0;
+            for (int i = 1; i <= points.n; i++) {
+                if (points.squared(i, longitude, latitude) <= radius * radius) {
+                    expected[m++] = i;
+                }
+            }
+            assertArrayEquals(Arrays.copyOf(expected, m), sorted(result, count));
+        }
+    }
+
+    @Test
+    void withinBox() {
+        SplittableRandom random = new SplittableRandom(13);
+        for (int trial = 0; trial < TRIALS; trial++) {
+            Points points = new Points(random, trial);
+            double minLongitude = points.longitude(random);
+            double minLatitude = points.latitude(random);
+            double maxLongitude = minLongitude + random.nextDouble() * 0.1;
+            double maxLatitude = minLatitude + random.nextDouble() * 0.1;
+            int[] result = new int[points.n];
+            int count = points.tree.withinBox(minLongitude, minLatitude, maxLongitude, maxLatitude, result);
+
+            int[] expected = new int[points.n];
+            int m = 0;
+            for (int i = 1; i <= points.n; i++) {
+                if (points.longitudes[i] >= minLongitude && points.longitudes[i] <= maxLongitude
+                        && points.latitudes[i] >= minLatitude && points.latitudes[i] <= maxLatitude) {
+                    expected[m++] = i;
+                }
+            }
+            assertArrayEquals(Arrays.copyOf(expected, m), sorted(result, count));
+        }
+    }
+
+    private static int[] sorted(int[] result, int count) {
+        int[] copy = Arrays.copyOf(result, count);
+        Arrays.sort(copy);
+        return copy;
+    }
+
+    /**
+     * 槽位0为投影原点，槽位1..n为随机的点，每隔几组让点重复出现，覆盖坐标相同的情况
+     */
+    private static class Points {
+        final int n;
+        final double[] longitudes;
+        final double[] latitudes;
+        final KdTree tree;
+
+        Points(SplittableRandom random, int trial) {
+            n = 1 + random.nextInt(400);
+            longitudes = new double[n + 1];
+            latitudes = new double[n + 1];
+            int[] slots = new int[n];
+            for (int i = 0; i <= n; i++) {
+                longitudes[i] = longitude(random);
+                latitudes[i] = latitude(random);
+                if (i > 0) {
+                    slots[i - 1] = i;
+                }
+            }
+            if (trial % 5 == 0) {
+                for (int i = 1; i <= n; i++) {
+                    int other = 1 + random.nextInt(n);
+                    longitudes[i] = longitudes[other];
+                    latitudes[i] = latitudes[other];
+                }
+            }
+            tree = new KdTree(slots, longitudes, latitudes, longitudes[0], latitudes[0]);
+        }
+
+        double longitude(SplittableRandom random) {
+            return 106.5 + random.nextDouble() * 0.3;
+        }
+
+        double latitude(SplittableRandom random) {
+            return 26.5 + random.nextDouble() * 0.3;
+        }
+
+        /**
+         * 槽位到给定位置的平面距离的平方
+         */
+        double squared(int slot, double longitude, double latitude) {
+            double dx = tree.x(longitudes[slot]) - tree.x(longitude);
+            double dy = tree.y(latitudes[slot]) - tree.y(latitude);
+            return dx * dx + dy * dy;
+        }
+    }
+}
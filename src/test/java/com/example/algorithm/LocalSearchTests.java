@@ -0,0 +1,89 @@
+package com.example.algorithm;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LocalSearchTests {
+    private static final int CUSTOMERS = 40;
+    private static final int ROUTE_LENGTH = 5;
+
+    @Test
+    void improve() {
+        Random random = new Random(3);
+        int[] moves = new int[3];
+        for (int trial = 0; trial < 10; trial++) {
+            VrpInstance instance = instance(random);
+            LocalSearch search = new LocalSearch(instance, LocalSearch.nearestNeighbors(instance.getMatrix(), 10));
+            int[] tour = shuffled(random);
+            int routeCount = CUSTOMERS / ROUTE_LENGTH;
+            int[] starts = new int[routeCount + 1];
+            for (int r = 0; r <= routeCount; r++) {
+                starts[r] = r * ROUTE_LENGTH;
+            }
+            double before = cost(instance, tour, starts, routeCount);
+            search.improve(tour, starts, routeCount);
+
+            // 每条线路都装满，客户只能在线路间交换，线路边界不变
+            assertEquals(before + search.gain, cost(instance, tour, starts, routeCount), 1e-6);
+            assertTrue(search.gain < 0);
+            for (int type = 0; type < moves.length; type++) {
+                moves[type] += search.moves[type];
+            }
+        }
+        assertTrue(moves[LocalSearch.OR_OPT] > 0);
+        assertTrue(moves[LocalSearch.EXCHANGE] > 0);
+        assertTrue(moves[LocalSearch.TWO_OPT] > 0);
+    }
+
+    private static double cost(VrpInstance instance, int[] tour, int[] starts, int routeCount) {
+        double cost = 0;
+        for (int r = 0; r < routeCount; r++) {
+            int last = DistanceMatrix.DEPOT;
+            for (int i = starts[r]; i < starts[r + 1]; i++) {
+                cost += instance.distance(last, tour[i]);
+                last = tour[i];
+            }
+            cost += instance.distance(last, DistanceMatrix.DEPOT);
+        }
+        return cost;
+    }
+
+    private static int[] shuffled(Random random) {
+        int[] tour = new int[CUSTOMERS];
+        for (int i = 0; i < CUSTOMERS; i++) {
+            tour[i] = i + 1;
+        }
+        for (int i = CUSTOMERS - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int temp = tour[i];
+            tour[i] = tour[j];
+            tour[j] = temp;
+        }
+        return tour;
+    }
+
+    /**
+     * 随机的非对称距离，每个客户需求为1，载重正好装下一条线路的客户，时长不限制
+     */
+    private static VrpInstance instance(Random random) {
+        int size = CUSTOMERS + 1;
+        double[] distances = new double[size * size];
+        for (int from = 0; from < size; from++) {
+            for (int to = 0; to < size; to++) {
+                if (from != to) {
+                    distances[from * size + to] = 1 + random.nextInt(1000);
+                }
+            }
+        }
+        int[] demands = new int[size];
+        for (int i = 1; i < size; i++) {
+            demands[i] = 1;
+        }
+        return new VrpInstance(demands, new DistanceMatrix(size, distances, new int[size * size]), ROUTE_LENGTH, Long.MAX_VALUE,
+                new double[size], new double[size]);
+    }
+}
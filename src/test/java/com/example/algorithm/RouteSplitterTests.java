@@ -0,0 +1,110 @@
+package com.example.algorithm;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RouteSplitterTests {
+    private static final int CUSTOMERS = 8;
+    private static final int CAPACITY = 100;
+    private static final long MAX_DURATION = 150;
+
+    @Test
+    void split() {
+        Random random = new Random(7);
+        for (int trial = 0; trial < 20; trial++) {
+            VrpInstance instance = instance(random);
+            int[] tour = new int[CUSTOMERS];
+            for (int i = 0; i < CUSTOMERS; i++) {
+                tour[i] = i + 1;
+            }
+            RouteSplitter splitter = new RouteSplitter(instance);
+            int[] starts = new int[CUSTOMERS + 1];
+            int routes = splitter.split(tour, starts);
+
+            assertEquals(bruteForce(instance, tour), splitter.getCost(), 1e-9);
+            // 输出的切分本身也要可行，并且代价与getCost一致
+            assertEquals(0, starts[0]);
+            assertEquals(CUSTOMERS, starts[routes]);
+            double cost = 0;
+            for (int r = 0; r < routes; r++) {
+                assertTrue(feasible(instance, tour, starts[r], starts[r + 1]));
+                cost += cost(instance, tour, starts[r], starts[r + 1]);
+            }
+            assertEquals(splitter.getCost(), cost, 1e-9);
+        }
+    }
+
+    /**
+     * 枚举相邻客户之间是否断开的所有组合
+     */
+    private static double bruteForce(VrpInstance instance, int[] tour) {
+        int n = tour.length;
+        double best = Double.POSITIVE_INFINITY;
+        for (int cuts = 0; cuts < 1 << (n - 1); cuts++) {
+            double cost = 0;
+            int start = 0;
+            for (int end = 1; end <= n && cost < best; end++) {
+                if (end == n || (cuts & 1 << (end - 1)) != 0) {
+                    if (!feasible(instance, tour, start, end)) {
+                        cost = Double.POSITIVE_INFINITY;
+                    } else {
+                        cost += cost(instance, tour, start, end);
+                    }
+                    start = end;
+                }
+            }
+            best = Math.min(best, cost);
+        }
+        return best;
+    }
+
+    /**
+     * 线路tour[start..end-1]是否满足载重和时长限制，只有一个客户的线路不受时长限制
+     */
+    private static boolean feasible(VrpInstance instance, int[] tour, int start, int end) {
+        int load = 0;
+        long duration = instance.duration(DistanceMatrix.DEPOT, tour[start]) + instance.duration(tour[end - 1], DistanceMatrix.DEPOT);
+        for (int p = start; p < end; p++) {
+            load += instance.demand(tour[p]);
+            if (p > start) {
+                duration += instance.duration(tour[p - 1], tour[p]);
+            }
+        }
+        return load <= instance.getCapacity() && (duration <= instance.getMaxDuration() || end - start == 1);
+    }
+
+    private static double cost(VrpInstance instance, int[] tour, int start, int end) {
+        double cost = instance.distance(DistanceMatrix.DEPOT, tour[start]) + instance.distance(tour[end - 1], DistanceMatrix.DEPOT);
+        for (int p = start + 1; p < end; p++) {
+            cost += instance.distance(tour[p - 1], tour[p]);
+        }
+        return cost;
+    }
+
+    /**
+     * 随机的非对称距离，时长取距离的十分之一，载重和时长限制都会截断线路
+     */
+    private static VrpInstance instance(Random random) {
+        int size = CUSTOMERS + 1;
+        double[] distances = new double[size * size];
+        int[] durations = new int[size * size];
+        for (int from = 0; from < size; from++) {
+            for (int to = 0; to < size; to++) {
+                if (from != to) {
+                    distances[from * size + to] = 50 + random.nextInt(400);
+                    durations[from * size + to] = (int) distances[from * size + to] / 10;
+                }
+            }
+        }
+        int[] demands = new int[size];
+        for (int i = 1; i < size; i++) {
+            demands[i] = 10 + random.nextInt(50);
+        }
+        return new VrpInstance(demands, new DistanceMatrix(size, distances, durations), CAPACITY, MAX_DURATION,
+                new double[size], new double[size]);
+    }
+}
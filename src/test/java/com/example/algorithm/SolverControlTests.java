@@ -0,0 +1,52 @@
+package com.example.algorithm;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SolverControlTests {
+
+    @Test
+    void unlimitedTime() {
+        SolverControl<String> control = new SolverControl<>();
+        control.start(100);
+
+        // 没有时间上限时只按代数停止
+        assertFalse(control.isFinished(0));
+        assertFalse(control.isFinished(99));
+        assertNull(control.getStopReason());
+        assertTrue(control.isFinished(100));
+        assertEquals(SolverControl.StopReason.GENERATIONS, control.getStopReason());
+    }
+
+    @Test
+    void timeLimit() throws InterruptedException {
+        SolverControl<String> control = new SolverControl<>();
+        control.setTimeLimit(20);
+        control.start(Integer.MAX_VALUE);
+        assertFalse(control.isFinished(0));
+        Thread.sleep(50);
+
+        assertTrue(control.isFinished(1));
+        assertEquals(SolverControl.StopReason.TIME_LIMIT, control.getStopReason());
+    }
+
+    @Test
+    void stagnationAndFinish() {
+        SolverControl<String> control = new SolverControl<>();
+        control.setStagnation(10);
+        control.start(1000);
+        control.update(5, 1.0, () -> "a");
+        assertFalse(control.isFinished(14));
+        assertTrue(control.isFinished(15));
+        assertEquals(SolverControl.StopReason.STAGNATION, control.getStopReason());
+
+        // 已经有终止原因时finish不覆盖
+        control.finish(SolverControl.StopReason.COMPLETED);
+        assertEquals(SolverControl.StopReason.STAGNATION, control.getStopReason());
+        assertEquals("a", control.getBest());
+    }
+}
@@ -0,0 +1,71 @@
+package com.example.algorithm;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TabuSolverTests {
+    private static final int CUSTOMERS = 40;
+    private static final int ROUTE_LENGTH = 5;
+
+    @Test
+    void moveDelta() {
+        Random random = new Random(5);
+        VrpInstance instance = instance(random);
+        TabuSolver.Search search = new TabuSolver.Search(instance, new SplittableRandom(5));
+        int[] tour = new int[CUSTOMERS];
+        for (int i = 0; i < CUSTOMERS; i++) {
+            tour[i] = i + 1;
+        }
+        int routeCount = CUSTOMERS / ROUTE_LENGTH;
+        int[] starts = new int[routeCount + 1];
+        for (int r = 0; r <= routeCount; r++) {
+            starts[r] = r * ROUTE_LENGTH;
+        }
+        search.load(tour, starts, routeCount);
+
+        // 载重不受限，没有超载惩罚，缓存的变化量应等于执行后按线路重新计算的距离变化
+        int[] moves = new int[4];
+        for (int iteration = 0; iteration < 2000; iteration++) {
+            double before = search.cost;
+            assertTrue(search.step());
+            assertEquals(search.cost - before, search.moveDelta, 1e-6);
+            moves[search.moveType]++;
+        }
+        assertTrue(moves[TabuSolver.RELOCATE] > 0);
+        assertTrue(moves[TabuSolver.SWAP] > 0);
+        assertTrue(moves[TabuSolver.TWO_OPT] > 0);
+        assertTrue(moves[TabuSolver.TWO_OPT_STAR] > 0);
+    }
+
+    /**
+     * 随机坐标，距离为坐标间的直线距离乘以随机的绕行系数(两个方向不同)，载重和时长不限制
+     */
+    private static VrpInstance instance(Random random) {
+        int size = CUSTOMERS + 1;
+        int[] demands = new int[size];
+        double[] longitudes = new double[size];
+        double[] latitudes = new double[size];
+        for (int i = 0; i < size; i++) {
+            demands[i] = i == 0 ? 0 : 1;
+            longitudes[i] = 106.5 + random.nextDouble() * 0.2;
+            latitudes[i] = 26.5 + random.nextDouble() * 0.2;
+        }
+        double[] distances = new double[size * size];
+        for (int from = 0; from < size; from++) {
+            for (int to = 0; to < size; to++) {
+                if (from != to) {
+                    double straight = HaversineDistanceProvider.haversine(longitudes[from], latitudes[from],
+                            longitudes[to], latitudes[to]);
+                    distances[from * size + to] = straight * (1.2 + random.nextDouble() * 0.3);
+                }
+            }
+        }
+        return new VrpInstance(demands, new DistanceMatrix(size, distances, new int[size * size]), CUSTOMERS, Long.MAX_VALUE,
+                longitudes, latitudes);
+    }
+}
@@ -0,0 +1,119 @@
+package com.example.algorithm;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class TourMoveTests {
+    private static final int SIZE = 8;
+
+    @Test
+    void swap() {
+        DistanceMatrix matrix = matrix(false);
+        TourMove.Swap swap = new TourMove.Swap(matrix);
+        for (boolean closed : new boolean[]{false, true}) {
+            for (int i = 1; i < SIZE; i++) {
+                for (int j = 1; j < SIZE; j++) {
+                    check(matrix, swap.set(i, j), closed);
+                }
+            }
+        }
+    }
+
+    @Test
+    void orOpt() {
+        DistanceMatrix matrix = matrix(false);
+        TourMove.OrOpt orOpt = new TourMove.OrOpt(matrix);
+        for (boolean closed : new boolean[]{false, true}) {
+            for (int length = 1; length <= TourMove.OrOpt.MAX_LENGTH; length++) {
+                // j在i之前和之后都要覆盖
+                for (int i = 1; i + length - 1 < SIZE; i++) {
+                    for (int j = 1; j + length - 1 < SIZE; j++) {
+                        check(matrix, orOpt.set(i, length, j), closed);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    void relocate() {
+        DistanceMatrix matrix = matrix(false);
+        TourMove.Relocate relocate = new TourMove.Relocate(matrix);
+        for (boolean closed : new boolean[]{false, true}) {
+            for (int i = 1; i < SIZE; i++) {
+                for (int j = 1; j < SIZE; j++) {
+                    check(matrix, relocate.set(i, j), closed);
+                }
+            }
+        }
+    }
+
+    @Test
+    void twoOpt() {
+        // 反转后的边方向改变，只在距离对称时变化量准确
+        DistanceMatrix matrix = matrix(true);
+        TourMove.TwoOpt twoOpt = new TourMove.TwoOpt(matrix);
+        for (boolean closed : new boolean[]{false, true}) {
+            for (int i = 1; i < SIZE; i++) {
+                for (int j = 1; j < SIZE; j++) {
+                    check(matrix, twoOpt.set(i, j), closed);
+                }
+            }
+        }
+    }
+
+    /**
+     * 执行前后重新计算路径长度，与操作给出的变化量比较
+     */
+    private static void check(DistanceMatrix matrix, TourMove move, boolean closed) {
+        int[] path = path(closed);
+        double before = length(matrix, path);
+        double delta = move.delta(path);
+        move.apply(path);
+        assertEquals(length(matrix, path) - before, delta, 1e-9);
+        assertEquals(0, path[0]);
+        if (closed) {
+            assertEquals(0, path[path.length - 1]);
+        }
+    }
+
+    /**
+     * 仓库加SIZE-1个客户，闭合路线在末尾再放一次仓库，操作只涉及位置1到SIZE-1
+     */
+    private static int[] path(boolean closed) {
+        int[] path = new int[closed ? SIZE + 1 : SIZE];
+        for (int i = 0; i < SIZE; i++) {
+            path[i] = i;
+        }
+        return path;
+    }
+
+    private static double length(DistanceMatrix matrix, int[] path) {
+        double length = 0;
+        for (int p = 1; p < path.length; p++) {
+            length += matrix.distance(path[p - 1], path[p]);
+        }
+        return length;
+    }
+
+    private static DistanceMatrix matrix(boolean symmetric) {
+        Random random = new Random(42);
+        double[] distances = new double[SIZE * SIZE];
+        for (int from = 0; from < SIZE; from++) {
+            for (int to = 0; to < SIZE; to++) {
+                if (from == to) {
+                    continue;
+                }
+                if (symmetric && to < from) {
+                    distances[from * SIZE + to] = distances[to * SIZE + from];
+                } else {
+                    distances[from * SIZE + to] = 1 + random.nextInt(1000);
+                }
+            }
+        }
+        return new DistanceMatrix(SIZE, distances, new int[SIZE * SIZE]);
+    }
+}